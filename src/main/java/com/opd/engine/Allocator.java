@@ -0,0 +1,35 @@
+package com.opd.engine;
+
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A full-rebuild algorithm: computes every placement from the roster and the
+ * active requests alone. Used to run candidate algorithms in shadow mode.
+ */
+@FunctionalInterface
+public interface Allocator {
+
+    /**
+     * @param slots    slots in registration order
+     * @param requests active requests, in any order
+     * @param strategy the slot selection the live rebuild used
+     * @return tokens keyed by request id
+     */
+    Map<String, AllocatedToken> allocate(List<TimeSlot> slots, Collection<TokenRequest> requests,
+                                         SlotSelectionStrategy strategy);
+
+    /**
+     * The engine's own rebuild with the given mode.
+     */
+    static Allocator of(TokenAllocationEngine.RebalanceMode mode) {
+        return (slots, requests, strategy) ->
+                TokenAllocationEngine.rebuild(slots, requests, mode, strategy, ForkJoinPool.commonPool());
+    }
+}
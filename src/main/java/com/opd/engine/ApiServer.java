@@ -1,18 +1,38 @@
 package com.opd.engine;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opd.engine.diagnostics.FlightRecorderControl;
+import com.opd.engine.diagnostics.HttpRequestEvent;
+import com.opd.engine.history.StatusHistory;
 import com.opd.engine.model.AllocatedToken;
 import com.opd.engine.model.Enums.TokenSource;
 import com.opd.engine.model.Enums.TokenStatus;
 import com.opd.engine.model.TimeSlot;
 import com.opd.engine.model.TokenRequest;
+import com.opd.engine.scheduling.NoShowScheduler;
 import io.javalin.Javalin;
-
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 /**
  * Full web interface for OPD Token Allocation Engine.
@@ -21,43 +41,213 @@ import java.util.Map;
 public class ApiServer {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
-    private static final String COMMON_STYLE = "<style>" +
-            "* { margin: 0; padding: 0; box-sizing: border-box; }" +
-            "body { font-family: 'Segoe UI', Tahoma, Geneva, Verdana, sans-serif; background: #f0f2f5; padding: 20px; }" +
-            ".container { max-width: 1200px; margin: 0 auto; background: white; padding: 30px; border-radius: 10px; box-shadow: 0 2px 10px rgba(0,0,0,0.1); }" +
-            "h1 { color: #2c3e50; margin-bottom: 20px; border-bottom: 3px solid #3498db; padding-bottom: 10px; }" +
-            "h2 { color: #34495e; margin: 20px 0 10px 0; }" +
-            ".nav { margin-bottom: 20px; }" +
-            ".nav a { display: inline-block; margin-right: 15px; padding: 8px 15px; background: #3498db; color: white; text-decoration: none; border-radius: 5px; }" +
-            ".nav a:hover { background: #2980b9; }" +
-            "table { width: 100%; border-collapse: collapse; margin: 20px 0; }" +
-            "th { background: #34495e; color: white; padding: 12px; text-align: left; }" +
-            "td { padding: 10px; border-bottom: 1px solid #ddd; }" +
-            "tr:hover { background: #f8f9fa; }" +
-            ".badge { padding: 4px 8px; border-radius: 4px; font-size: 0.85em; font-weight: bold; }" +
-            ".badge-emergency { background: #e74c3c; color: white; }" +
-            ".badge-priority { background: #f39c12; color: white; }" +
-            ".badge-followup { background: #9b59b6; color: white; }" +
-            ".badge-online { background: #3498db; color: white; }" +
-            ".badge-walkin { background: #95a5a6; color: white; }" +
-            ".badge-confirmed { background: #27ae60; color: white; }" +
-            ".badge-pending { background: #f39c12; color: white; }" +
-            ".form-group { margin: 15px 0; }" +
-            "label { display: block; margin-bottom: 5px; font-weight: bold; color: #2c3e50; }" +
-            "input, select { width: 100%; padding: 10px; border: 1px solid #ddd; border-radius: 5px; font-size: 14px; }" +
-            "button { padding: 12px 24px; background: #27ae60; color: white; border: none; border-radius: 5px; cursor: pointer; font-size: 16px; }" +
-            "button:hover { background: #229954; }" +
-            ".btn-danger { background: #e74c3c; }" +
-            ".btn-danger:hover { background: #c0392b; }" +
-            ".btn-warning { background: #f39c12; }" +
-            ".btn-warning:hover { background: #d68910; }" +
-            ".success { background: #d4edda; color: #155724; padding: 15px; border-radius: 5px; margin: 15px 0; }" +
-            ".error { background: #f8d7da; color: #721c24; padding: 15px; border-radius: 5px; margin: 15px 0; }" +
-            ".info-box { background: #e8f4f8; padding: 15px; border-radius: 5px; margin: 15px 0; border-left: 4px solid #3498db; }" +
-            "</style>";
-
-    public static void main(String[] args) {
+    /** Site stylesheet, served from /static/opd.css. */
+    private static final byte[] STYLESHEET = loadStylesheet();
+    private static final String STYLESHEET_VERSION = checksum(STYLESHEET);
+    private static final String STYLESHEET_ETAG = "\"" + STYLESHEET_VERSION + "\"";
+    /** Versioned so browsers can cache it for good and still pick up a changed stylesheet. */
+    private static final String STYLESHEET_URL = "/static/opd.css?v=" + STYLESHEET_VERSION;
+
+    private static final String NAV = "<div class=\"nav\">" +
+            "<a href=\"/\">Home</a>" +
+            "<a href=\"/health\">Health</a>" +
+            "<a href=\"/slots\">View Slots</a>" +
+            "<a href=\"/tokens/request\">Request Token</a>" +
+            "</div>";
+    private static final String FOOTER = "</div></body></html>";
+    private static final String HOME_ICON = "<span style='font-size: 1.2em; color: #3498db; font-weight: bold;'>&#10010;</span> ";
+    private static final String SUCCESS_ICON = "<span style='color: #27ae60; font-size: 1.2em; font-weight: bold;'>&#10003;</span> ";
+    private static final String ERROR_ICON = "<span style='color: #e74c3c; font-size: 1.2em; font-weight: bold;'>&#10007;</span> ";
+
+    // Page templates, compiled once; {} marks where a value is written.
+    private static final HtmlTemplate HOME_PAGE = HtmlTemplate.compile(
+            head("OPD Token Allocation Engine", HOME_ICON + "OPD Token Allocation Engine") +
+            "<div class=\"info-box\">" +
+            "<h2>System Status</h2>" +
+            "<p><strong>Total Slots:</strong> {}</p>" +
+            "<p><strong>Active Allocations:</strong> {}</p>" +
+            "</div>" +
+            "<h2>Quick Actions</h2>" +
+            "<div class=\"nav\">" +
+            "<a href=\"/slots\">View All Time Slots</a>" +
+            "<a href=\"/tokens/request\">Request New Token</a>" +
+            "</div>" +
+            "<h2>Available Endpoints</h2>" +
+            "<table>" +
+            "<tr><th>Method</th><th>Endpoint</th><th>Description</th></tr>" +
+            "<tr><td>GET</td><td><a href=\"/health\">/health</a></td><td>System health check</td></tr>" +
+            "<tr><td>GET</td><td><a href=\"/slots\">/slots</a></td><td>List all time slots</td></tr>" +
+            "<tr><td>GET</td><td>/slots/{slotId}/tokens</td><td>View tokens for a slot</td></tr>" +
+            "<tr><td>POST</td><td>/slots/import</td><td>Import slots from CSV or JSON</td></tr>" +
+            "<tr><td>POST</td><td>/slots/{slotId}/capacity</td><td>Change slot capacity</td></tr>" +
+            "<tr><td>POST</td><td>/slots/{slotId}/remove</td><td>Remove a slot</td></tr>" +
+            "<tr><td>GET</td><td><a href=\"/tokens/request\">/tokens/request</a></td><td>Request token form</td></tr>" +
+            "<tr><td>POST</td><td>/tokens/request</td><td>Create token request</td></tr>" +
+            "<tr><td>POST</td><td>/tokens/{requestId}/cancel</td><td>Cancel a token</td></tr>" +
+            "<tr><td>POST</td><td>/tokens/{requestId}/check-in</td><td>Check in (exempts from automatic no-show)</td></tr>" +
+            "<tr><td>POST</td><td>/tokens/{requestId}/no-show</td><td>Mark no-show</td></tr>" +
+            "<tr><td>GET</td><td>/analytics</td><td>No-show/cancel rates, source mix and slot fill curves</td></tr>" +
+            "{}" +
+            "<tr><td>POST</td><td>/diagnostics/shadow/start?candidate=</td><td>Compare a candidate rebuild with every live rebuild</td></tr>" +
+            "<tr><td>GET</td><td>/diagnostics/shadow</td><td>Shadow divergences and relative latency</td></tr>" +
+            "<tr><td>POST</td><td>/diagnostics/shadow/stop</td><td>Stop shadow mode and return the final report</td></tr>" +
+            "</table>" +
+            FOOTER);
+
+    /** Rows for the flight recorder endpoints, listed only when they are enabled. */
+    private static final byte[] JFR_ENDPOINT_ROWS = HtmlWriter.encode(
+            "<tr><td>POST</td><td>/diagnostics/jfr/start</td><td>Start continuous flight recording</td></tr>" +
+            "<tr><td>GET</td><td>/diagnostics/jfr/dump</td><td>Download the flight recording</td></tr>" +
+            "<tr><td>POST</td><td>/diagnostics/jfr/stop</td><td>Stop flight recording</td></tr>");
+
+    private static final HtmlTemplate HEALTH_PAGE = HtmlTemplate.compile(
+            head("Health Check - OPD Token Allocation", HOME_ICON + "System Health") +
+            "<div class=\"success\">" +
+            "<h2>✓ System Operational</h2>" +
+            "<p>All services are running normally.</p>" +
+            "<p><strong>Status:</strong> OK</p>" +
+            "<p><strong>Timestamp:</strong> {}</p>" +
+            "</div>" +
+            FOOTER);
+
+    private static final HtmlTemplate SLOTS_PAGE = HtmlTemplate.compile(
+            head("Time Slots - OPD Token Allocation", "Time Slots") +
+            "<table>" +
+            "<tr><th>Slot ID</th><th>Doctor</th><th>Time</th><th>Capacity</th><th>Allocated</th><th>Available</th><th>Actions</th></tr>");
+    private static final HtmlTemplate SLOT_ROW = HtmlTemplate.compile(
+            "<tr><td><strong>{}</strong></td><td>{}</td><td>{}</td><td>{}</td><td>{}</td><td>{}</td>" +
+            "<td><a href=\"/slots/{}/tokens\">View Tokens</a></td></tr>");
+    private static final byte[] TABLE_END = HtmlWriter.encode("</table>" + FOOTER);
+
+    private static final HtmlTemplate SLOT_TOKENS_PAGE = HtmlTemplate.compile(
+            head("Tokens for {} - OPD Token Allocation", "Tokens for {}") +
+            "<div class=\"info-box\">" +
+            "<p><strong>Doctor:</strong> {}</p>" +
+            "<p><strong>Time:</strong> {}</p>" +
+            "<p><strong>Capacity:</strong> {}</p>" +
+            "<p><strong>Allocated:</strong> {}</p>" +
+            "</div>" +
+            "<table>" +
+            "<tr><th>Sequence</th><th>Token ID</th><th>Patient ID</th><th>Source</th><th>Status</th><th>Actions</th></tr>");
+    private static final byte[] NO_TOKENS_ROW = HtmlWriter.encode(
+            "<tr><td colspan='6' style='text-align: center; padding: 20px;'>No tokens allocated for this slot</td></tr>");
+    private static final HtmlTemplate TOKEN_ROW = HtmlTemplate.compile(
+            "<tr><td><strong>#{}</strong></td><td>{}</td><td>{}</td><td>{}</td><td>{}</td><td>" +
+            "<form method=\"post\" action=\"/tokens/{}/cancel\" class=\"inline\">" +
+            "<button type=\"submit\" class=\"btn-danger btn-small\">Cancel</button></form> ");
+    private static final HtmlTemplate TOKEN_CHECK_IN = HtmlTemplate.compile(
+            "<form method=\"post\" action=\"/tokens/{}/check-in\" class=\"inline\">" +
+            "<button type=\"submit\" class=\"btn-small\">Check In</button></form> ");
+    private static final HtmlTemplate TOKEN_ROW_END = HtmlTemplate.compile(
+            "<form method=\"post\" action=\"/tokens/{}/no-show\" class=\"inline\">" +
+            "<button type=\"submit\" class=\"btn-warning btn-small\">No Show</button></form></td></tr>");
+
+    private static final byte[] REQUEST_FORM = HtmlWriter.encode(
+            head("Request Token - OPD Token Allocation", "Request New Token") +
+            "<form method=\"post\" action=\"/tokens/request\">" +
+            "<div class=\"form-group\">" +
+            "<label for=\"patientId\">Patient ID *</label>" +
+            "<input type=\"text\" id=\"patientId\" name=\"patientId\" required placeholder=\"e.g., P123\">" +
+            "</div>" +
+            "<div class=\"form-group\">" +
+            "<label for=\"source\">Token Source *</label>" +
+            "<select id=\"source\" name=\"source\" required>" +
+            "<option value=\"ONLINE\">Online Booking</option>" +
+            "<option value=\"WALK_IN\">Walk-In</option>" +
+            "<option value=\"PRIORITY\">Paid Priority</option>" +
+            "<option value=\"FOLLOW_UP\">Follow-Up</option>" +
+            "<option value=\"EMERGENCY\">Emergency</option>" +
+            "</select>" +
+            "</div>" +
+            "<div class=\"form-group\">" +
+            "<label for=\"preferredSlotId\">Preferred Slot (Optional)</label>" +
+            "<select id=\"preferredSlotId\" name=\"preferredSlotId\">" +
+            "<option value=''>Any available slot</option>");
+    private static final HtmlTemplate SLOT_OPTION = HtmlTemplate.compile("<option value='{}'>{} ({} {}-{})</option>");
+    private static final byte[] REQUEST_FORM_END = HtmlWriter.encode(
+            "</select>" +
+            "</div>" +
+            "<div class=\"form-group\">" +
+            "<label><input type=\"checkbox\" name=\"followUp\" value=\"true\"> Follow-up patient</label>" +
+            "</div>" +
+            "<button type=\"submit\">Request Token</button>" +
+            "</form>" +
+            FOOTER);
+
+    private static final HtmlTemplate REQUEST_SUCCESS_PAGE = HtmlTemplate.compile(
+            head("Token Requested - OPD Token Allocation", SUCCESS_ICON + "Token Request Successful") +
+            "<div class=\"success\">" +
+            "<p><strong>Request ID:</strong> {}</p>" +
+            "<p><strong>Patient ID:</strong> {}</p>" +
+            "<p><strong>Source:</strong> {}</p>" +
+            "<p>Your token request has been processed. The system will allocate you to the best available slot.</p>" +
+            "</div>" +
+            "<p><a href=\"/slots\">View All Slots</a> | <a href=\"/tokens/request\">Request Another Token</a></p>" +
+            FOOTER);
+    private static final HtmlTemplate CANCEL_SUCCESS_PAGE = HtmlTemplate.compile(
+            head("Token Cancelled - OPD Token Allocation", SUCCESS_ICON + "Token Cancelled") +
+            "<div class=\"success\">" +
+            "<p>Token request <strong>{}</strong> has been cancelled.</p>" +
+            "<p>The slot capacity has been freed and reallocated.</p>" +
+            "</div>" +
+            "<p><a href=\"/slots\">View All Slots</a></p>" +
+            FOOTER);
+    private static final HtmlTemplate CHECK_IN_SUCCESS_PAGE = HtmlTemplate.compile(
+            head("Checked In - OPD Token Allocation", SUCCESS_ICON + "Checked In") +
+            "<div class=\"success\">" +
+            "<p>Token request <strong>{}</strong> has been checked in.</p>" +
+            "<p>The token will not be marked as no-show automatically.</p>" +
+            "</div>" +
+            "<p><a href=\"/slots\">View All Slots</a></p>" +
+            FOOTER);
+    private static final HtmlTemplate NO_SHOW_SUCCESS_PAGE = HtmlTemplate.compile(
+            head("No-Show Recorded - OPD Token Allocation", SUCCESS_ICON + "No-Show Recorded") +
+            "<div class=\"success\">" +
+            "<p>Token request <strong>{}</strong> has been marked as no-show.</p>" +
+            "<p>The slot capacity has been freed and reallocated.</p>" +
+            "</div>" +
+            "<p><a href=\"/slots\">View All Slots</a></p>" +
+            FOOTER);
+    private static final HtmlTemplate ERROR_PAGE = HtmlTemplate.compile(
+            head("Error - OPD Token Allocation", ERROR_ICON + "Error") +
+            "<div class=\"error\">" +
+            "<p>{}{}</p>" +
+            "</div>" +
+            FOOTER);
+
+    private static final Map<TokenSource, byte[]> SOURCE_BADGES = new EnumMap<>(TokenSource.class);
+    private static final Map<TokenStatus, byte[]> STATUS_BADGES = new EnumMap<>(TokenStatus.class);
+
+    static {
+        for (TokenSource source : TokenSource.values()) {
+            SOURCE_BADGES.put(source, HtmlWriter.encode(getSourceBadge(source)));
+        }
+        for (TokenStatus status : TokenStatus.values()) {
+            STATUS_BADGES.put(status, HtmlWriter.encode(getStatusBadge(status)));
+        }
+    }
+
+    private static final String HTTP_EVENT_ATTRIBUTE = "jfr.http";
+    private static final long MAX_NO_SHOW_GRACE_MINUTES = 24 * 60;
+
+    public static void main(String[] args) throws IOException, ParseException {
         TokenAllocationEngine engine = createDefaultEngine();
+        if ("load-balanced".equalsIgnoreCase(System.getenv("SLOT_SELECTION"))) {
+            engine.setSlotSelectionStrategy(SlotSelectionStrategy.LOAD_BALANCED);
+        }
+        Duration noShowGrace = resolveNoShowGrace();
+        if (noShowGrace != null) {
+            NoShowScheduler noShowScheduler = new NoShowScheduler(engine, noShowGrace);
+            noShowScheduler.start();
+            System.out.println("Automatic no-show after " + noShowScheduler.getGrace().toMinutes() + " minutes");
+        }
+        // The recording and its HTTP endpoints are opt-in: a dump exposes thread stacks and timings.
+        boolean jfrEnabled = List.of(args).contains("--jfr");
+        FlightRecorderControl flightRecorder = new FlightRecorderControl();
+        if (jfrEnabled) {
+            flightRecorder.start();
+            System.out.println("Continuous flight recording started");
+        }
 
         int port = resolvePort();
         Javalin app = Javalin.create(config -> {
@@ -66,62 +256,202 @@ public class ApiServer {
 
         System.out.println("OPD Token Allocation API running on http://localhost:" + port);
 
+        // One flight recorder event per request, tagged with the matched route
+        app.before(ctx -> {
+            HttpRequestEvent event = new HttpRequestEvent();
+            event.begin();
+            ctx.attribute(HTTP_EVENT_ATTRIBUTE, event);
+        });
+        app.after(ctx -> {
+            HttpRequestEvent event = ctx.attribute(HTTP_EVENT_ATTRIBUTE);
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = ctx.method().name();
+                event.route = ctx.endpointHandlerPath();
+                event.path = ctx.path();
+                event.status = ctx.statusCode();
+                event.commit();
+            }
+        });
+
+        // Flight recorder control, only with --jfr
+        if (jfrEnabled) {
+            app.post("/diagnostics/jfr/start", ctx -> ctx.json(Map.of(
+                    "status", flightRecorder.start() ? "started" : "already_running")));
+            app.post("/diagnostics/jfr/stop", ctx -> {
+                flightRecorder.stop();
+                ctx.json(Map.of("status", "stopped"));
+            });
+            app.get("/diagnostics/jfr/dump", ctx -> {
+                if (!flightRecorder.isRunning()) {
+                    jsonError(ctx, 409, "No flight recording is running", null);
+                    return;
+                }
+                Path dump = flightRecorder.dump(Files.createTempFile("opd-", ".jfr"));
+                ctx.contentType("application/octet-stream");
+                ctx.header("Content-Disposition", "attachment; filename=\"opd-recording.jfr\"");
+                ctx.result(Files.newInputStream(dump, StandardOpenOption.DELETE_ON_CLOSE));
+            });
+        }
+
+        // Shadow verification of a candidate rebuild algorithm against the live one
+        app.post("/diagnostics/shadow/start", ctx -> {
+            String candidate = ctx.queryParam("candidate");
+            TokenAllocationEngine.RebalanceMode mode;
+            if (candidate == null || candidate.equalsIgnoreCase("partitioned")) {
+                mode = TokenAllocationEngine.RebalanceMode.PARTITIONED;
+            } else if (candidate.equalsIgnoreCase("sequential")) {
+                mode = TokenAllocationEngine.RebalanceMode.SEQUENTIAL;
+            } else {
+                jsonError(ctx, 400, "candidate must be 'partitioned' or 'sequential'", "candidate");
+                return;
+            }
+            String name = mode.name().toLowerCase();
+            engine.enableShadow(name, Allocator.of(mode));
+            ctx.json(Map.of("status", "started", "candidate", name, "live", engine.getRebalanceMode().name().toLowerCase()));
+        });
+        app.post("/diagnostics/shadow/stop", ctx -> {
+            ShadowVerifier.Report report = engine.disableShadow();
+            if (report == null) {
+                jsonError(ctx, 409, "Shadow mode is not running", null);
+                return;
+            }
+            ctx.json(report);
+        });
+        app.get("/diagnostics/shadow", ctx -> {
+            ShadowVerifier.Report report = engine.getShadowReport();
+            if (report == null) {
+                jsonError(ctx, 409, "Shadow mode is not running", null);
+                return;
+            }
+            ctx.json(report);
+        });
+
+        // Stylesheet shared by all pages; versioned URLs are cached for good, others revalidated by ETag
+        app.get("/static/opd.css", ctx -> {
+            ctx.header("ETag", STYLESHEET_ETAG);
+            ctx.header("Cache-Control", STYLESHEET_VERSION.equals(ctx.queryParam("v"))
+                    ? "public, max-age=31536000, immutable"
+                    : "no-cache");
+            if (STYLESHEET_ETAG.equals(ctx.header("If-None-Match"))) {
+                ctx.status(304);
+                return;
+            }
+            ctx.contentType("text/css; charset=utf-8");
+            ctx.outputStream().write(STYLESHEET);
+        });
+
         // Home page
-        app.get("/", ctx -> ctx.html(homePage(engine)));
+        app.get("/", ctx -> render(ctx, out -> homePage(out, engine, jfrEnabled)));
 
         // Health check
-        app.get("/health", ctx -> ctx.html(healthPage()));
+        app.get("/health", ctx -> render(ctx, ApiServer::healthPage));
 
         // Slots listing
-        app.get("/slots", ctx -> ctx.html(slotsPage(engine)));
+        app.get("/slots", ctx -> render(ctx, out -> slotsPage(out, engine)));
 
         // View tokens for a specific slot
         app.get("/slots/{slotId}/tokens", ctx -> {
             String slotId = ctx.pathParam("slotId");
-            ctx.html(slotTokensPage(engine, slotId));
+            render(ctx, out -> slotTokensPage(out, engine, slotId));
         });
 
-        // Request token form
-        app.get("/tokens/request", ctx -> ctx.html(requestTokenForm(engine)));
-
-        // Handle token request (form submission)
-        app.post("/tokens/request", ctx -> {
+        // Bulk roster import (CSV or JSON array), streamed from the request body
+        app.post("/slots/import", ctx -> {
             try {
+                RosterImporter importer = new RosterImporter(engine);
                 String contentType = ctx.contentType();
-                String patientId;
-                TokenSource source;
-                String preferredSlotId;
-                boolean followUp;
-
-                if (contentType != null && contentType.contains("application/json")) {
-                    // JSON API
-                    Map<String, Object> body = MAPPER.readValue(ctx.body(), Map.class);
-                    patientId = (String) body.get("patientId");
-                    source = TokenSource.valueOf(((String) body.get("source")).toUpperCase());
-                    preferredSlotId = (String) body.getOrDefault("preferredSlotId", null);
-                    followUp = body.getOrDefault("followUp", Boolean.FALSE) instanceof Boolean b && b;
+                int imported;
+                if (contentType != null && contentType.contains("text/csv")) {
+                    imported = importer.importCsv(new InputStreamReader(ctx.bodyInputStream(), StandardCharsets.UTF_8));
                 } else {
-                    // Form submission
-                    patientId = ctx.formParam("patientId");
-                    source = TokenSource.valueOf(ctx.formParam("source").toUpperCase());
-                    preferredSlotId = ctx.formParam("preferredSlotId");
-                    if (preferredSlotId != null && preferredSlotId.isEmpty()) preferredSlotId = null;
-                    followUp = "true".equals(ctx.formParam("followUp"));
+                    imported = importer.importJson(ctx.bodyInputStream());
                 }
+                ctx.json(Map.of("imported", imported, "totalSlots", engine.getSlots().size()));
+            } catch (RosterImporter.ImportException e) {
+                ctx.status(400).json(Map.of("error", e.getMessage(), "imported", e.getImported()));
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).json(Map.of("error", e.getMessage()));
+            }
+        });
 
-                TokenRequest request = new TokenRequest(patientId, source, preferredSlotId, followUp);
-                engine.addRequest(request);
+        // Change a slot's capacity
+        app.post("/slots/{slotId}/capacity", ctx -> {
+            String slotId = ctx.pathParam("slotId");
+            try {
+                String capacity = ctx.formParam("capacity");
+                if (capacity == null) {
+                    capacity = ctx.queryParam("capacity");
+                }
+                if (capacity == null) {
+                    throw new IllegalArgumentException("capacity is required");
+                }
+                engine.updateCapacity(slotId, Integer.parseInt(capacity.trim()));
+                ctx.json(Map.of("slotId", slotId, "capacity", engine.getSlot(slotId).getCapacity()));
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).json(Map.of("error", e.getMessage()));
+            }
+        });
 
-                if (contentType != null && contentType.contains("application/json")) {
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("requestId", request.getId());
-                    response.put("allocations", engine.getCurrentAllocations());
-                    ctx.json(response);
-                } else {
-                    ctx.html(requestTokenSuccess(engine, request));
+        // Remove a slot from the roster
+        app.post("/slots/{slotId}/remove", ctx -> {
+            String slotId = ctx.pathParam("slotId");
+            if (engine.getSlot(slotId) == null) {
+                ctx.status(404).json(Map.of("error", "Slot not found: " + slotId));
+                return;
+            }
+            engine.removeSlots(List.of(slotId));
+            ctx.json(Map.of("status", "removed", "slotId", slotId));
+        });
+
+        // Operational analytics over the status history (does not lock the engine)
+        app.get("/analytics", ctx -> {
+            int bucketMinutes;
+            try {
+                String param = ctx.queryParam("bucketMinutes");
+                bucketMinutes = param == null ? 15 : Integer.parseInt(param.trim());
+                if (bucketMinutes < 1) {
+                    throw new NumberFormatException();
                 }
+            } catch (NumberFormatException e) {
+                jsonError(ctx, 400, "bucketMinutes must be a positive integer", "bucketMinutes");
+                return;
+            }
+            StatusHistory history = engine.getHistory();
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("transitions", history.size());
+            response.put("doctors", history.statsByDoctor());
+            response.put("sourceMix", history.sourceMix());
+            response.put("slotFill", history.slotFillCurves(Duration.ofMinutes(bucketMinutes)));
+            ctx.json(response);
+        });
+
+        // Request token form
+        app.get("/tokens/request", ctx -> render(ctx, out -> requestTokenForm(out, engine)));
+
+        // Handle token request (JSON API or form submission)
+        app.post("/tokens/request", ctx -> {
+            String contentType = ctx.contentType();
+            if (contentType != null && contentType.contains("application/json")) {
+                handleJsonTokenRequest(ctx, engine);
+                return;
+            }
+            try {
+                TokenRequest request = TokenRequestPayload.of(
+                        ctx.formParam("patientId"),
+                        TokenRequestPayload.sourceOf(ctx.formParam("source")),
+                        ctx.formParam("preferredSlotId"),
+                        "true".equals(ctx.formParam("followUp"))).toTokenRequest();
+                engine.addRequest(request);
+                render(ctx, out -> requestTokenSuccess(out, request));
+            } catch (IllegalArgumentException e) {
+                ctx.status(400);
+                render(ctx, out -> errorPage(out, "Error requesting token: ", e.getMessage()));
             } catch (Exception e) {
-                ctx.html(requestTokenError(e.getMessage()));
+                render(ctx, out -> errorPage(out, "Error requesting token: ", e.getMessage()));
             }
         });
 
@@ -134,10 +464,29 @@ public class ApiServer {
                 if (contentType != null && contentType.contains("application/json")) {
                     ctx.json(Map.of("status", "cancelled", "requestId", requestId));
                 } else {
-                    ctx.html(cancelTokenSuccess(engine, requestId));
+                    render(ctx, out -> CANCEL_SUCCESS_PAGE.render(out, requestId));
                 }
             } catch (Exception e) {
-                ctx.html(cancelTokenError(e.getMessage()));
+                render(ctx, out -> errorPage(out, "Error cancelling token: ", e.getMessage()));
+            }
+        });
+
+        // Patient arrived at the desk
+        app.post("/tokens/{requestId}/check-in", ctx -> {
+            String requestId = ctx.pathParam("requestId");
+            boolean found = engine.checkIn(requestId);
+            String contentType = ctx.contentType();
+            if (contentType != null && contentType.contains("application/json")) {
+                if (found) {
+                    ctx.json(Map.of("status", "checked_in", "requestId", requestId));
+                } else {
+                    jsonError(ctx, 404, "No allocated token for request: " + requestId, null);
+                }
+            } else if (found) {
+                render(ctx, out -> CHECK_IN_SUCCESS_PAGE.render(out, requestId));
+            } else {
+                ctx.status(404);
+                render(ctx, out -> errorPage(out, "No allocated token for request: ", requestId));
             }
         });
 
@@ -150,296 +499,146 @@ public class ApiServer {
                 if (contentType != null && contentType.contains("application/json")) {
                     ctx.json(Map.of("status", "no_show_recorded", "requestId", requestId));
                 } else {
-                    ctx.html(noShowSuccess(engine, requestId));
+                    render(ctx, out -> NO_SHOW_SUCCESS_PAGE.render(out, requestId));
                 }
             } catch (Exception e) {
-                ctx.html(noShowError(e.getMessage()));
+                render(ctx, out -> errorPage(out, "Error recording no-show: ", e.getMessage()));
             }
         });
     }
 
-    private static String homePage(TokenAllocationEngine engine) {
-        long totalSlots = engine.getSlots().size();
-        long totalAllocations = engine.getCurrentAllocations().size();
-        
-        return "<!DOCTYPE html><html><head><title>OPD Token Allocation Engine</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1><span style='font-size: 1.2em; color: #3498db; font-weight: bold;'>&#10010;</span> OPD Token Allocation Engine</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<div class=\"info-box\">" +
-                "<h2>System Status</h2>" +
-                "<p><strong>Total Slots:</strong> " + totalSlots + "</p>" +
-                "<p><strong>Active Allocations:</strong> " + totalAllocations + "</p>" +
-                "</div>" +
-                "<h2>Quick Actions</h2>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/slots\">View All Time Slots</a>" +
-                "<a href=\"/tokens/request\">Request New Token</a>" +
-                "</div>" +
-                "<h2>Available Endpoints</h2>" +
-                "<table>" +
-                "<tr><th>Method</th><th>Endpoint</th><th>Description</th></tr>" +
-                "<tr><td>GET</td><td><a href=\"/health\">/health</a></td><td>System health check</td></tr>" +
-                "<tr><td>GET</td><td><a href=\"/slots\">/slots</a></td><td>List all time slots</td></tr>" +
-                "<tr><td>GET</td><td>/slots/{slotId}/tokens</td><td>View tokens for a slot</td></tr>" +
-                "<tr><td>GET</td><td><a href=\"/tokens/request\">/tokens/request</a></td><td>Request token form</td></tr>" +
-                "<tr><td>POST</td><td>/tokens/request</td><td>Create token request</td></tr>" +
-                "<tr><td>POST</td><td>/tokens/{requestId}/cancel</td><td>Cancel a token</td></tr>" +
-                "<tr><td>POST</td><td>/tokens/{requestId}/no-show</td><td>Mark no-show</td></tr>" +
-                "</table>" +
-                "</div></body></html>";
-    }
+    /**
+     * JSON booking path: the body is parsed straight from the request stream and
+     * validation problems are reported as a 400 JSON error naming the field.
+     */
+    private static void handleJsonTokenRequest(Context ctx, TokenAllocationEngine engine) throws IOException {
+        TokenRequestPayload payload;
+        try {
+            payload = TokenRequestPayload.read(MAPPER.getFactory(), ctx.bodyInputStream());
+        } catch (TokenRequestPayload.InvalidPayloadException e) {
+            jsonError(ctx, 400, e.getMessage(), e.getField());
+            return;
+        } catch (JsonProcessingException e) {
+            jsonError(ctx, 400, "Malformed JSON: " + e.getOriginalMessage(), null);
+            return;
+        }
 
-    private static String healthPage() {
-        String timestamp = java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        return "<!DOCTYPE html><html><head><title>Health Check - OPD Token Allocation</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1><span style='font-size: 1.2em; color: #3498db; font-weight: bold;'>&#10010;</span> System Health</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<div class=\"success\">" +
-                "<h2>✓ System Operational</h2>" +
-                "<p>All services are running normally.</p>" +
-                "<p><strong>Status:</strong> OK</p>" +
-                "<p><strong>Timestamp:</strong> " + timestamp + "</p>" +
-                "</div>" +
-                "</div></body></html>";
-    }
+        TokenRequest request = payload.toTokenRequest();
+        engine.addRequest(request);
 
-    private static String slotsPage(TokenAllocationEngine engine) {
-        StringBuilder html = new StringBuilder();
-        html.append("<!DOCTYPE html><html><head><title>Time Slots - OPD Token Allocation</title>");
-        html.append(COMMON_STYLE);
-        html.append("</head><body><div class=\"container\">");
-        html.append("<h1>Time Slots</h1>");
-        html.append("<div class=\"nav\">");
-        html.append("<a href=\"/\">Home</a>");
-        html.append("<a href=\"/health\">Health</a>");
-        html.append("<a href=\"/slots\">View Slots</a>");
-        html.append("<a href=\"/tokens/request\">Request Token</a>");
-        html.append("</div>");
-        html.append("<table>");
-        html.append("<tr><th>Slot ID</th><th>Doctor</th><th>Time</th><th>Capacity</th><th>Allocated</th><th>Available</th><th>Actions</th></tr>");
+        Map<String, Object> response = new HashMap<>();
+        response.put("requestId", request.getId());
+        response.put("allocations", engine.getCurrentAllocations());
+        ctx.json(response);
+    }
 
-        for (TimeSlot slot : engine.getSlots()) {
-            List<AllocatedToken> tokens = engine.getAllocationsForSlot(slot.getId());
-            int allocated = tokens.size();
-            int available = slot.getCapacity() - allocated;
-            String timeRange = slot.getStart() + " - " + slot.getEnd();
-            
-            html.append("<tr>");
-            html.append("<td><strong>").append(slot.getId()).append("</strong></td>");
-            html.append("<td>").append(slot.getDoctorId()).append("</td>");
-            html.append("<td>").append(timeRange).append("</td>");
-            html.append("<td>").append(slot.getCapacity()).append("</td>");
-            html.append("<td>").append(allocated).append("</td>");
-            html.append("<td>").append(available).append("</td>");
-            html.append("<td><a href=\"/slots/").append(slot.getId()).append("/tokens\">View Tokens</a></td>");
-            html.append("</tr>");
+    private static void jsonError(Context ctx, int status, String message, String field) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", message);
+        if (field != null) {
+            error.put("field", field);
         }
+        ctx.status(status).json(error);
+    }
 
-        html.append("</table></div></body></html>");
-        return html.toString();
+    /**
+     * Streams a page straight to the response instead of building it as a String.
+     */
+    private static void render(Context ctx, HtmlWriter.Page page) throws IOException {
+        ctx.contentType("text/html; charset=utf-8");
+        HtmlWriter out = new HtmlWriter(ctx.outputStream());
+        page.render(out);
+        out.flush();
     }
 
-    private static String slotTokensPage(TokenAllocationEngine engine, String slotId) {
-        List<AllocatedToken> tokens = engine.getAllocationsForSlot(slotId);
-        TimeSlot slot = engine.getSlots().stream()
-                .filter(s -> s.getId().equals(slotId))
-                .findFirst()
-                .orElse(null);
+    private static String head(String title, String heading) {
+        return "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>" + title + "</title>" +
+                "<link rel=\"stylesheet\" href=\"" + STYLESHEET_URL + "\"></head><body>" +
+                "<div class=\"container\">" +
+                "<h1>" + heading + "</h1>" +
+                NAV;
+    }
 
-        if (slot == null) {
-            return errorPage("Slot not found: " + slotId);
+    private static byte[] loadStylesheet() {
+        try (InputStream in = ApiServer.class.getResourceAsStream("/static/opd.css")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource /static/opd.css");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        StringBuilder html = new StringBuilder();
-        html.append("<!DOCTYPE html><html><head><title>Tokens for ").append(slotId).append(" - OPD Token Allocation</title>");
-        html.append(COMMON_STYLE);
-        html.append("</head><body><div class=\"container\">");
-        html.append("<h1>Tokens for ").append(slotId).append("</h1>");
-        html.append("<div class=\"nav\">");
-        html.append("<a href=\"/\">Home</a>");
-        html.append("<a href=\"/health\">Health</a>");
-        html.append("<a href=\"/slots\">View Slots</a>");
-        html.append("<a href=\"/tokens/request\">Request Token</a>");
-        html.append("</div>");
-        html.append("<div class=\"info-box\">");
-        html.append("<p><strong>Doctor:</strong> ").append(slot.getDoctorId()).append("</p>");
-        html.append("<p><strong>Time:</strong> ").append(slot.getStart()).append(" - ").append(slot.getEnd()).append("</p>");
-        html.append("<p><strong>Capacity:</strong> ").append(slot.getCapacity()).append("</p>");
-        html.append("<p><strong>Allocated:</strong> ").append(tokens.size()).append("</p>");
-        html.append("</div>");
-        html.append("<table>");
-        html.append("<tr><th>Sequence</th><th>Token ID</th><th>Patient ID</th><th>Source</th><th>Status</th><th>Actions</th></tr>");
+    private static String checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return Long.toHexString(crc.getValue());
+    }
 
-        if (tokens.isEmpty()) {
-            html.append("<tr><td colspan='6' style='text-align: center; padding: 20px;'>No tokens allocated for this slot</td></tr>");
-        } else {
-            for (AllocatedToken token : tokens) {
-                String sourceBadge = getSourceBadge(token.getRequest().getSource());
-                String statusBadge = getStatusBadge(token.getStatus());
-                
-                html.append("<tr>");
-                html.append("<td><strong>#").append(token.getSequence()).append("</strong></td>");
-                html.append("<td>").append(token.getTokenId()).append("</td>");
-                html.append("<td>").append(token.getRequest().getPatientId()).append("</td>");
-                html.append("<td>").append(sourceBadge).append("</td>");
-                html.append("<td>").append(statusBadge).append("</td>");
-                html.append("<td>");
-                html.append("<form method=\"post\" action=\"/tokens/").append(token.getRequest().getId()).append("/cancel\" style=\"display: inline;\">");
-                html.append("<button type=\"submit\" class=\"btn-danger\" style=\"padding: 5px 10px; font-size: 12px;\">Cancel</button>");
-                html.append("</form> ");
-                html.append("<form method=\"post\" action=\"/tokens/").append(token.getRequest().getId()).append("/no-show\" style=\"display: inline;\">");
-                html.append("<button type=\"submit\" class=\"btn-warning\" style=\"padding: 5px 10px; font-size: 12px;\">No Show</button>");
-                html.append("</form>");
-                html.append("</td>");
-                html.append("</tr>");
-            }
-        }
+    private static void homePage(HtmlWriter out, TokenAllocationEngine engine, boolean jfrEnabled) throws IOException {
+        HOME_PAGE.render(out, engine.getSlots().size(), engine.getCurrentAllocations().size(),
+                jfrEnabled ? JFR_ENDPOINT_ROWS : null);
+    }
 
-        html.append("</table></div></body></html>");
-        return html.toString();
+    private static void healthPage(HtmlWriter out) throws IOException {
+        String timestamp = java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        HEALTH_PAGE.render(out, timestamp);
     }
 
-    private static String requestTokenForm(TokenAllocationEngine engine) {
-        StringBuilder slotOptions = new StringBuilder("<option value=''>Any available slot</option>");
+    private static void slotsPage(HtmlWriter out, TokenAllocationEngine engine) throws IOException {
+        SLOTS_PAGE.render(out);
         for (TimeSlot slot : engine.getSlots()) {
-            slotOptions.append("<option value='").append(slot.getId()).append("'>")
-                    .append(slot.getId()).append(" (").append(slot.getDoctorId())
-                    .append(" ").append(slot.getStart()).append("-").append(slot.getEnd())
-                    .append(")</option>");
+            int allocated = engine.getAllocationsForSlot(slot.getId()).size();
+            SLOT_ROW.render(out, slot.getId(), slot.getDoctorId(), timeRange(slot),
+                    slot.getCapacity(), allocated, slot.getCapacity() - allocated, slot.getId());
         }
-
-        return "<!DOCTYPE html><html><head><title>Request Token - OPD Token Allocation</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1>Request New Token</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<form method=\"post\" action=\"/tokens/request\">" +
-                "<div class=\"form-group\">" +
-                "<label for=\"patientId\">Patient ID *</label>" +
-                "<input type=\"text\" id=\"patientId\" name=\"patientId\" required placeholder=\"e.g., P123\">" +
-                "</div>" +
-                "<div class=\"form-group\">" +
-                "<label for=\"source\">Token Source *</label>" +
-                "<select id=\"source\" name=\"source\" required>" +
-                "<option value=\"ONLINE\">Online Booking</option>" +
-                "<option value=\"WALK_IN\">Walk-In</option>" +
-                "<option value=\"PRIORITY\">Paid Priority</option>" +
-                "<option value=\"FOLLOW_UP\">Follow-Up</option>" +
-                "<option value=\"EMERGENCY\">Emergency</option>" +
-                "</select>" +
-                "</div>" +
-                "<div class=\"form-group\">" +
-                "<label for=\"preferredSlotId\">Preferred Slot (Optional)</label>" +
-                "<select id=\"preferredSlotId\" name=\"preferredSlotId\">" +
-                slotOptions.toString() +
-                "</select>" +
-                "</div>" +
-                "<div class=\"form-group\">" +
-                "<label><input type=\"checkbox\" name=\"followUp\" value=\"true\"> Follow-up patient</label>" +
-                "</div>" +
-                "<button type=\"submit\">Request Token</button>" +
-                "</form>" +
-                "</div></body></html>";
+        out.raw(TABLE_END);
     }
 
-    private static String requestTokenSuccess(TokenAllocationEngine engine, TokenRequest request) {
-        return "<!DOCTYPE html><html><head><title>Token Requested - OPD Token Allocation</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1><span style='color: #27ae60; font-size: 1.2em; font-weight: bold;'>&#10003;</span> Token Request Successful</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<div class=\"success\">" +
-                "<p><strong>Request ID:</strong> " + request.getId() + "</p>" +
-                "<p><strong>Patient ID:</strong> " + request.getPatientId() + "</p>" +
-                "<p><strong>Source:</strong> " + request.getSource() + "</p>" +
-                "<p>Your token request has been processed. The system will allocate you to the best available slot.</p>" +
-                "</div>" +
-                "<p><a href=\"/slots\">View All Slots</a> | <a href=\"/tokens/request\">Request Another Token</a></p>" +
-                "</div></body></html>";
-    }
+    private static void slotTokensPage(HtmlWriter out, TokenAllocationEngine engine, String slotId) throws IOException {
+        List<AllocatedToken> tokens = engine.getAllocationsForSlot(slotId);
+        TimeSlot slot = engine.getSlot(slotId);
 
-    private static String requestTokenError(String message) {
-        return errorPage("Error requesting token: " + message);
-    }
+        if (slot == null) {
+            errorPage(out, "Slot not found: ", slotId);
+            return;
+        }
 
-    private static String cancelTokenSuccess(TokenAllocationEngine engine, String requestId) {
-        return "<!DOCTYPE html><html><head><title>Token Cancelled - OPD Token Allocation</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1><span style='color: #27ae60; font-size: 1.2em; font-weight: bold;'>&#10003;</span> Token Cancelled</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<div class=\"success\">" +
-                "<p>Token request <strong>" + requestId + "</strong> has been cancelled.</p>" +
-                "<p>The slot capacity has been freed and reallocated.</p>" +
-                "</div>" +
-                "<p><a href=\"/slots\">View All Slots</a></p>" +
-                "</div></body></html>";
+        SLOT_TOKENS_PAGE.render(out, slotId, slotId, slot.getDoctorId(), timeRange(slot), slot.getCapacity(), tokens.size());
+        if (tokens.isEmpty()) {
+            out.raw(NO_TOKENS_ROW);
+        }
+        for (AllocatedToken token : tokens) {
+            TokenRequest request = token.getRequest();
+            TOKEN_ROW.render(out, token.getSequence(), token.getTokenId(), request.getPatientId(),
+                    SOURCE_BADGES.get(request.getSource()), STATUS_BADGES.get(token.getStatus()), request.getId());
+            if (token.getStatus() == TokenStatus.CONFIRMED) {
+                TOKEN_CHECK_IN.render(out, request.getId());
+            }
+            TOKEN_ROW_END.render(out, request.getId());
+        }
+        out.raw(TABLE_END);
     }
 
-    private static String cancelTokenError(String message) {
-        return errorPage("Error cancelling token: " + message);
+    private static String timeRange(TimeSlot slot) {
+        return (slot.getDate() == null ? "" : slot.getDate() + " ") + slot.getStart() + " - " + slot.getEnd();
     }
 
-    private static String noShowSuccess(TokenAllocationEngine engine, String requestId) {
-        return "<!DOCTYPE html><html><head><title>No-Show Recorded - OPD Token Allocation</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1><span style='color: #27ae60; font-size: 1.2em; font-weight: bold;'>&#10003;</span> No-Show Recorded</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<div class=\"success\">" +
-                "<p>Token request <strong>" + requestId + "</strong> has been marked as no-show.</p>" +
-                "<p>The slot capacity has been freed and reallocated.</p>" +
-                "</div>" +
-                "<p><a href=\"/slots\">View All Slots</a></p>" +
-                "</div></body></html>";
+    private static void requestTokenForm(HtmlWriter out, TokenAllocationEngine engine) throws IOException {
+        out.raw(REQUEST_FORM);
+        for (TimeSlot slot : engine.getSlots()) {
+            SLOT_OPTION.render(out, slot.getId(), slot.getId(), slot.getDoctorId(), slot.getStart(), slot.getEnd());
+        }
+        out.raw(REQUEST_FORM_END);
     }
 
-    private static String noShowError(String message) {
-        return errorPage("Error recording no-show: " + message);
+    private static void requestTokenSuccess(HtmlWriter out, TokenRequest request) throws IOException {
+        REQUEST_SUCCESS_PAGE.render(out, request.getId(), request.getPatientId(), request.getSource());
     }
 
-    private static String errorPage(String message) {
-        return "<!DOCTYPE html><html><head><title>Error - OPD Token Allocation</title>" + COMMON_STYLE + "</head><body>" +
-                "<div class=\"container\">" +
-                "<h1><span style='color: #e74c3c; font-size: 1.2em; font-weight: bold;'>&#10007;</span> Error</h1>" +
-                "<div class=\"nav\">" +
-                "<a href=\"/\">Home</a>" +
-                "<a href=\"/health\">Health</a>" +
-                "<a href=\"/slots\">View Slots</a>" +
-                "<a href=\"/tokens/request\">Request Token</a>" +
-                "</div>" +
-                "<div class=\"error\">" +
-                "<p>" + message + "</p>" +
-                "</div>" +
-                "</div></body></html>";
+    private static void errorPage(HtmlWriter out, String context, String message) throws IOException {
+        ERROR_PAGE.render(out, context, message);
     }
 
     private static String getSourceBadge(TokenSource source) {
@@ -458,6 +657,7 @@ public class ApiServer {
             case PENDING -> "<span class='badge badge-pending'>PENDING</span>";
             case CANCELLED -> "<span class='badge badge-danger'>CANCELLED</span>";
             case NO_SHOW -> "<span class='badge badge-warning'>NO-SHOW</span>";
+            case CHECKED_IN -> "<span class='badge badge-checkedin'>CHECKED IN</span>";
         };
     }
 
@@ -477,10 +677,58 @@ public class ApiServer {
         }
     }
 
+    /**
+     * Grace period for automatic no-show from NO_SHOW_GRACE_MINUTES, or null to leave
+     * the feature off when the variable is unset or not a non-negative whole number.
+     */
+    private static Duration resolveNoShowGrace() {
+        String fromEnv = System.getenv("NO_SHOW_GRACE_MINUTES");
+        if (fromEnv == null || fromEnv.isBlank()) {
+            return null;
+        }
+        try {
+            long minutes = Long.parseLong(fromEnv.trim());
+            if (minutes < 0 || minutes > MAX_NO_SHOW_GRACE_MINUTES) {
+                System.err.println("Ignoring NO_SHOW_GRACE_MINUTES=" + fromEnv + ": must be between 0 and "
+                        + MAX_NO_SHOW_GRACE_MINUTES + "; automatic no-show is off");
+                return null;
+            }
+            return Duration.ofMinutes(minutes);
+        } catch (NumberFormatException ignored) {
+            System.err.println("Ignoring NO_SHOW_GRACE_MINUTES=" + fromEnv + ": not a number; automatic no-show is off");
+            return null;
+        }
+    }
+
+    /**
+     * Loads the roster named by the ROSTER_FILE environment variable (.csv or .json),
+     * or falls back to the built-in default day.
+     */
+    private static TokenAllocationEngine createDefaultEngine() throws IOException {
+        String rosterFile = System.getenv("ROSTER_FILE");
+        if (rosterFile == null || rosterFile.isBlank()) {
+            return createDefaultDay();
+        }
+        TokenAllocationEngine engine = new TokenAllocationEngine(List.of());
+        Path path = Path.of(rosterFile.trim());
+        int imported;
+        if (path.toString().endsWith(".csv")) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                imported = new RosterImporter(engine).importCsv(reader);
+            }
+        } else {
+            try (InputStream in = Files.newInputStream(path)) {
+                imported = new RosterImporter(engine).importJson(in);
+            }
+        }
+        System.out.println("Imported " + imported + " slots from " + path);
+        return engine;
+    }
+
     /**
      * Builds a simple default day with three doctors and fixed slots.
      */
-    private static TokenAllocationEngine createDefaultEngine() {
+    private static TokenAllocationEngine createDefaultDay() {
         TimeSlot drA1 = new TimeSlot("drA-09", "DrA", LocalTime.of(9, 0), LocalTime.of(10, 0), 10);
         TimeSlot drA2 = new TimeSlot("drA-10", "DrA", LocalTime.of(10, 0), LocalTime.of(11, 0), 10);
 
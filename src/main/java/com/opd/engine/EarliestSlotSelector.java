@@ -0,0 +1,48 @@
+package com.opd.engine;
+
+import com.opd.engine.model.TimeSlot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The original placement rule: the first slot in chronological order that still
+ * has room. Slots before {@code firstOpen} are known to be full, so selection is
+ * amortised O(1) over a pass, where slots only ever fill up.
+ */
+class EarliestSlotSelector implements SlotSelectionStrategy.Selector {
+
+    private final TimeSlot[] slots;
+    private final int[] used;
+    private final Map<String, Integer> indexById;
+    private int firstOpen;
+
+    EarliestSlotSelector(List<TimeSlot> slotsInStartOrder) {
+        slots = slotsInStartOrder.toArray(new TimeSlot[0]);
+        used = new int[slots.length];
+        indexById = new HashMap<>(slots.length * 2);
+        for (int i = 0; i < slots.length; i++) {
+            indexById.put(slots[i].getId(), i);
+        }
+    }
+
+    @Override
+    public TimeSlot select() {
+        while (firstOpen < slots.length && used[firstOpen] >= slots[firstOpen].getCapacity()) {
+            firstOpen++;
+        }
+        return firstOpen < slots.length ? slots[firstOpen] : null;
+    }
+
+    @Override
+    public boolean hasRoom(TimeSlot slot) {
+        int i = indexById.get(slot.getId());
+        return used[i] < slots[i].getCapacity();
+    }
+
+    @Override
+    public void placed(TimeSlot slot) {
+        used[indexById.get(slot.getId())]++;
+    }
+}
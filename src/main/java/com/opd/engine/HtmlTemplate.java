@@ -0,0 +1,48 @@
+package com.opd.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Markup with {@code {}} placeholders, split and UTF-8 encoded once when compiled.
+ * Rendering writes the encoded static parts as they are and HTML-escapes each
+ * value in between, so a page costs no String building beyond its dynamic values.
+ */
+final class HtmlTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+
+    private final byte[][] parts;
+
+    private HtmlTemplate(byte[][] parts) {
+        this.parts = parts;
+    }
+
+    static HtmlTemplate compile(String markup) {
+        List<byte[]> parts = new ArrayList<>();
+        int from = 0;
+        int at;
+        while ((at = markup.indexOf(PLACEHOLDER, from)) >= 0) {
+            parts.add(markup.substring(from, at).getBytes(StandardCharsets.UTF_8));
+            from = at + PLACEHOLDER.length();
+        }
+        parts.add(markup.substring(from).getBytes(StandardCharsets.UTF_8));
+        return new HtmlTemplate(parts.toArray(new byte[0][]));
+    }
+
+    /**
+     * @param values one per placeholder; see {@link HtmlWriter#value} for how each is written
+     */
+    void render(HtmlWriter out, Object... values) throws IOException {
+        if (values.length != parts.length - 1) {
+            throw new IllegalArgumentException("Template takes " + (parts.length - 1) + " values, got " + values.length);
+        }
+        out.raw(parts[0]);
+        for (int i = 0; i < values.length; i++) {
+            out.value(values[i]);
+            out.raw(parts[i + 1]);
+        }
+    }
+}
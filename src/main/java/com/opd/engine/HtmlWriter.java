@@ -0,0 +1,142 @@
+package com.opd.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered UTF-8 writer for HTML responses. Pre-encoded markup is copied as is, or
+ * handed straight to the stream when it does not fit the buffer; text is escaped
+ * and encoded directly into the buffer without intermediate Strings.
+ */
+final class HtmlWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    HtmlWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    static byte[] encode(String markup) {
+        return markup.getBytes(StandardCharsets.UTF_8);
+    }
+
+    void raw(byte[] bytes) throws IOException {
+        if (bytes.length > BUFFER_SIZE - count) {
+            flushBuffer();
+            if (bytes.length > BUFFER_SIZE / 2) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Writes a template value: pre-encoded markup ({@code byte[]}) as is, nothing for
+     * null, numbers as digits and anything else as escaped text.
+     */
+    void value(Object value) throws IOException {
+        if (value instanceof byte[] markup) {
+            raw(markup);
+        } else if (value instanceof Integer || value instanceof Long) {
+            number(((Number) value).longValue());
+        } else if (value instanceof CharSequence text) {
+            text(text);
+        } else if (value != null) {
+            text(value.toString());
+        }
+    }
+
+    void text(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> ascii("&amp;");
+                case '<' -> ascii("&lt;");
+                case '>' -> ascii("&gt;");
+                case '"' -> ascii("&quot;");
+                case '\'' -> ascii("&#39;");
+                default -> {
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        codePoint(Character.toCodePoint(c, text.charAt(++i)));
+                    } else {
+                        codePoint(Character.isSurrogate(c) ? '?' : c);
+                    }
+                }
+            }
+        }
+    }
+
+    void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void number(long value) throws IOException {
+        if (value < 0) {
+            byte1('-');
+            if (value == Long.MIN_VALUE) {
+                ascii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        if (value >= 10) {
+            number(value / 10);
+        }
+        byte1('0' + (int) (value % 10));
+    }
+
+    private void codePoint(int cp) throws IOException {
+        if (cp < 0x80) {
+            byte1(cp);
+        } else if (cp < 0x800) {
+            byte1(0xC0 | (cp >> 6));
+            byte1(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            byte1(0xE0 | (cp >> 12));
+            byte1(0x80 | ((cp >> 6) & 0x3F));
+            byte1(0x80 | (cp & 0x3F));
+        } else {
+            byte1(0xF0 | (cp >> 18));
+            byte1(0x80 | ((cp >> 12) & 0x3F));
+            byte1(0x80 | ((cp >> 6) & 0x3F));
+            byte1(0x80 | (cp & 0x3F));
+        }
+    }
+
+    private void ascii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            byte1(s.charAt(i));
+        }
+    }
+
+    private void byte1(int b) throws IOException {
+        if (count == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * A page or fragment rendered into a writer.
+     */
+    @FunctionalInterface
+    interface Page {
+        void render(HtmlWriter out) throws IOException;
+    }
+}
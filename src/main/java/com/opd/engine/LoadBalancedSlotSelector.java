@@ -0,0 +1,151 @@
+package com.opd.engine;
+
+import com.opd.engine.model.TimeSlot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the earliest start time that still has room and, among the slots starting
+ * then, the one with the fewest tokens, so walk-ins spread across doctors instead
+ * of piling onto whichever doctor was registered first.
+ *
+ * Slots starting at the same time form a group with an indexed min-heap of its
+ * non-full slots, keyed by tokens held and then registration order. The heaps
+ * are built for each allocation pass; every placement updates one heap entry, so
+ * each choice is O(log D) for D doctors working at that time.
+ */
+class LoadBalancedSlotSelector implements SlotSelectionStrategy.Selector {
+
+    private final TimeSlot[] slots;
+    private final int[] used;
+    private final Map<String, Integer> indexById;
+
+    /** Group of each slot; groups are numbered in chronological order. */
+    private final int[] groupOf;
+    /** Heap storage of each group: slot indices, heap-ordered. */
+    private final int[][] heaps;
+    private final int[] heapSizes;
+    /** Position of each slot in its group's heap, or -1 while the slot is full. */
+    private final int[] heapPosition;
+    private int firstOpenGroup;
+
+    LoadBalancedSlotSelector(List<TimeSlot> slotsInStartOrder) {
+        slots = slotsInStartOrder.toArray(new TimeSlot[0]);
+        used = new int[slots.length];
+        indexById = new HashMap<>(slots.length * 2);
+        groupOf = new int[slots.length];
+        heapPosition = new int[slots.length];
+
+        int groups = 0;
+        int[] groupSizes = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            indexById.put(slots[i].getId(), i);
+            if (i == 0 || TimeSlot.CHRONOLOGICAL.compare(slots[i - 1], slots[i]) != 0) {
+                groups++;
+            }
+            groupOf[i] = groups - 1;
+            groupSizes[groups - 1]++;
+        }
+
+        heaps = new int[groups][];
+        heapSizes = new int[groups];
+        for (int g = 0; g < groups; g++) {
+            heaps[g] = new int[groupSizes[g]];
+        }
+        // Slots are added in registration order with zero load, which is already heap order.
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].getCapacity() > 0) {
+                int g = groupOf[i];
+                heapPosition[i] = heapSizes[g];
+                heaps[g][heapSizes[g]++] = i;
+            } else {
+                heapPosition[i] = -1;
+            }
+        }
+    }
+
+    @Override
+    public TimeSlot select() {
+        while (firstOpenGroup < heaps.length && heapSizes[firstOpenGroup] == 0) {
+            firstOpenGroup++;
+        }
+        return firstOpenGroup < heaps.length ? slots[heaps[firstOpenGroup][0]] : null;
+    }
+
+    @Override
+    public boolean hasRoom(TimeSlot slot) {
+        int i = indexById.get(slot.getId());
+        return used[i] < slots[i].getCapacity();
+    }
+
+    @Override
+    public void placed(TimeSlot slot) {
+        int i = indexById.get(slot.getId());
+        used[i]++;
+        if (heapPosition[i] < 0) {
+            return;
+        }
+        if (used[i] >= slots[i].getCapacity()) {
+            remove(i);
+        } else {
+            siftDown(groupOf[i], heapPosition[i]);
+        }
+    }
+
+    private void remove(int slot) {
+        int g = groupOf[slot];
+        int position = heapPosition[slot];
+        int last = heaps[g][--heapSizes[g]];
+        heapPosition[slot] = -1;
+        if (last == slot) {
+            return;
+        }
+        heaps[g][position] = last;
+        heapPosition[last] = position;
+        siftDown(g, position);
+        siftUp(g, heapPosition[last]);
+    }
+
+    private void siftUp(int g, int position) {
+        int[] heap = heaps[g];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!lighter(heap[position], heap[parent])) {
+                break;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int g, int position) {
+        int[] heap = heaps[g];
+        int size = heapSizes[g];
+        while (true) {
+            int left = 2 * position + 1;
+            if (left >= size) {
+                break;
+            }
+            int child = left + 1 < size && lighter(heap[left + 1], heap[left]) ? left + 1 : left;
+            if (!lighter(heap[child], heap[position])) {
+                break;
+            }
+            swap(heap, position, child);
+            position = child;
+        }
+    }
+
+    private boolean lighter(int a, int b) {
+        return used[a] != used[b] ? used[a] < used[b] : a < b;
+    }
+
+    private void swap(int[] heap, int a, int b) {
+        int slot = heap[a];
+        heap[a] = heap[b];
+        heap[b] = slot;
+        heapPosition[heap[a]] = a;
+        heapPosition[heap[b]] = b;
+    }
+}
@@ -0,0 +1,229 @@
+package com.opd.engine;
+
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.Enums.TokenStatus;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Full rebuild that produces exactly the placement of the sequential rebalance,
+ * with the per-token work done per doctor in parallel.
+ *
+ * A request pinned to a slot only ever competes for that slot, so each slot is a
+ * lane holding the ranks of its pinned requests in allocation order. Sorting and
+ * looking up each request's lane run on the pool. Lanes then accept their pinned
+ * requests in parallel up to the first unpinned request. Between the first and the
+ * last unpinned request one thread walks the ranks in order, handing pinned ranks
+ * to their lane and unpinned ones to the slot selector, so the selector sees the
+ * same occupancy as in the sequential pass; this walk only moves ints. Finally
+ * each doctor's lanes drain their remaining pinned requests and build the tokens,
+ * sequence numbers and token ids straight into the engine's maps, in parallel.
+ */
+class PartitionedRebalancer {
+
+    private final ForkJoinPool pool;
+
+    PartitionedRebalancer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Places the requests and writes their tokens into {@code tokens} and the
+     * number of tokens per slot into {@code sequences}; both must be concurrent maps.
+     *
+     * @param slots             slots in registration order
+     * @param slotsInStartOrder the same slots, sorted by {@link TimeSlot#CHRONOLOGICAL}
+     * @param requests          active requests, in any order
+     */
+    void allocate(Collection<TimeSlot> slots,
+                  List<TimeSlot> slotsInStartOrder,
+                  SlotSelectionStrategy strategy,
+                  Collection<TokenRequest> requests,
+                  Map<String, AllocatedToken> tokens,
+                  Map<String, Integer> sequences) {
+        Map<String, Lane> lanesBySlotId = new HashMap<>(slots.size() * 2);
+        Map<String, List<Lane>> lanesByDoctor = new LinkedHashMap<>();
+        for (TimeSlot slot : slots) {
+            Lane lane = new Lane(slot);
+            lanesBySlotId.put(slot.getId(), lane);
+            lanesByDoctor.computeIfAbsent(slot.getDoctorId(), id -> new ArrayList<>()).add(lane);
+        }
+
+        TokenRequest[] sorted = requests.toArray(new TokenRequest[0]);
+        Lane[] laneOfRank = new Lane[sorted.length];
+        inPool(() -> {
+            Arrays.parallelSort(sorted, TokenAllocationEngine.ALLOCATION_ORDER);
+            Arrays.parallelSetAll(laneOfRank, rank -> {
+                String preferred = sorted[rank].getPreferredSlotId();
+                return preferred == null ? null : lanesBySlotId.get(preferred);
+            });
+        });
+
+        int firstUnpinned = -1;
+        int lastUnpinned = -1;
+        for (int rank = 0; rank < sorted.length; rank++) {
+            Lane lane = laneOfRank[rank];
+            if (lane != null) {
+                lane.pin(rank);
+            } else {
+                if (firstUnpinned < 0) {
+                    firstUnpinned = rank;
+                }
+                lastUnpinned = rank;
+            }
+        }
+
+        int acceptBefore = firstUnpinned < 0 ? Integer.MAX_VALUE : firstUnpinned;
+        forEachDoctor(lanesByDoctor, lane -> lane.advanceTo(acceptBefore));
+
+        if (firstUnpinned >= 0) {
+            placeUnpinned(lanesBySlotId, slotsInStartOrder, strategy, laneOfRank, firstUnpinned, lastUnpinned);
+        }
+
+        Instant now = Instant.now();
+        forEachDoctor(lanesByDoctor, lane -> {
+            lane.advanceTo(Integer.MAX_VALUE);
+            String slotId = lane.slot.getId();
+            for (int i = 0; i < lane.placedCount; i++) {
+                TokenRequest request = sorted[lane.placed[i]];
+                tokens.put(request.getId(), new AllocatedToken(
+                        TokenAllocationEngine.newTokenId(),
+                        request,
+                        slotId,
+                        i + 1,
+                        TokenStatus.CONFIRMED,
+                        now
+                ));
+            }
+            sequences.put(slotId, lane.placedCount);
+        });
+    }
+
+    /**
+     * The serial part: ranks from the first to the last unpinned request, in order.
+     */
+    private void placeUnpinned(Map<String, Lane> lanesBySlotId,
+                               List<TimeSlot> slotsInStartOrder,
+                               SlotSelectionStrategy strategy,
+                               Lane[] laneOfRank,
+                               int firstUnpinned,
+                               int lastUnpinned) {
+        SlotSelectionStrategy.Selector selector = strategy.newSelector(slotsInStartOrder);
+        for (Lane lane : lanesBySlotId.values()) {
+            for (int i = 0; i < lane.placedCount; i++) {
+                selector.placed(lane.slot);
+            }
+        }
+
+        for (int rank = firstUnpinned; rank <= lastUnpinned; rank++) {
+            Lane lane = laneOfRank[rank];
+            if (lane != null) {
+                if (lane.acceptNext()) {
+                    selector.placed(lane.slot);
+                }
+                continue;
+            }
+            TimeSlot slot = selector.select();
+            if (slot == null) {
+                // Every slot is full; pinned requests still pending will be rejected as well.
+                return;
+            }
+            selector.placed(slot);
+            lanesBySlotId.get(slot.getId()).place(rank);
+        }
+    }
+
+    private void forEachDoctor(Map<String, List<Lane>> lanesByDoctor, Consumer<Lane> action) {
+        List<Callable<Void>> tasks = new ArrayList<>(lanesByDoctor.size());
+        for (List<Lane> lanes : lanesByDoctor.values()) {
+            tasks.add(() -> {
+                for (Lane lane : lanes) {
+                    action.accept(lane);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            await(future);
+        }
+    }
+
+    /**
+     * Runs an action on the pool, so parallel array operations inside it use the pool
+     * instead of the common one.
+     */
+    private void inPool(Runnable action) {
+        await(pool.submit(action));
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rebalance interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rebalance failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * One slot: the ranks of its pinned requests in allocation order and the ranks
+     * accepted so far.
+     */
+    private static final class Lane {
+        private final TimeSlot slot;
+        private int[] pinned = new int[4];
+        private int pinnedCount;
+        private int cursor;
+        private int[] placed = new int[4];
+        private int placedCount;
+
+        private Lane(TimeSlot slot) {
+            this.slot = slot;
+        }
+
+        private void pin(int rank) {
+            if (pinnedCount == pinned.length) {
+                pinned = Arrays.copyOf(pinned, pinnedCount * 2);
+            }
+            pinned[pinnedCount++] = rank;
+        }
+
+        private void place(int rank) {
+            if (placedCount == placed.length) {
+                placed = Arrays.copyOf(placed, placedCount * 2);
+            }
+            placed[placedCount++] = rank;
+        }
+
+        /**
+         * Accepts pinned requests ranked before {@code rank}, as the sequential pass would have.
+         */
+        private void advanceTo(int rank) {
+            while (cursor < pinnedCount && pinned[cursor] < rank) {
+                acceptNext();
+            }
+        }
+
+        /**
+         * @return whether the next pinned request got a seat
+         */
+        private boolean acceptNext() {
+            boolean accepted = placedCount < slot.getCapacity();
+            if (accepted) {
+                place(pinned[cursor]);
+            }
+            cursor++;
+            return accepted;
+        }
+    }
+}
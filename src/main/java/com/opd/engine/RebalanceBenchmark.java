@@ -0,0 +1,82 @@
+package com.opd.engine;
+
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times full rebuilds in both {@link TokenAllocationEngine.RebalanceMode}s for a
+ * growing number of doctors: 30k requests, three in four pinned to a random slot,
+ * eight slots per doctor. Prints the median of 30 runs after 10 warm-up runs.
+ * Run with: mvn -q -DskipTests exec:java -Dexec.mainClass=com.opd.engine.RebalanceBenchmark -Dexec.args="[threads]"
+ */
+public class RebalanceBenchmark {
+
+    private static final int REQUESTS = 30_000;
+    private static final int SLOTS_PER_DOCTOR = 8;
+    private static final int WARMUP = 10;
+    private static final int RUNS = 30;
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        System.out.println("Pool parallelism: " + threads + ", available processors: "
+                + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %14s %15s %8s%n", "doctors", "sequential ms", "partitioned ms", "speedup");
+        for (int doctors : new int[]{5, 20, 80, 320}) {
+            List<TimeSlot> slots = roster(doctors);
+            List<TokenRequest> requests = requests(slots);
+            double sequential = median(slots, requests, TokenAllocationEngine.RebalanceMode.SEQUENTIAL, pool);
+            double partitioned = median(slots, requests, TokenAllocationEngine.RebalanceMode.PARTITIONED, pool);
+            System.out.printf("%8d %14.1f %15.1f %7.2fx%n", doctors, sequential, partitioned, sequential / partitioned);
+        }
+        pool.shutdown();
+    }
+
+    private static double median(List<TimeSlot> slots, List<TokenRequest> requests,
+                                 TokenAllocationEngine.RebalanceMode mode, ForkJoinPool pool) {
+        long[] times = new long[RUNS];
+        for (int run = -WARMUP; run < RUNS; run++) {
+            long start = System.nanoTime();
+            TokenAllocationEngine.rebuild(slots, requests, mode, SlotSelectionStrategy.EARLIEST_FIRST, pool);
+            if (run >= 0) {
+                times[run] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2] / 1e6;
+    }
+
+    private static List<TimeSlot> roster(int doctors) {
+        int capacity = REQUESTS / (doctors * SLOTS_PER_DOCTOR) + 1;
+        List<TimeSlot> slots = new ArrayList<>();
+        for (int d = 0; d < doctors; d++) {
+            for (int s = 0; s < SLOTS_PER_DOCTOR; s++) {
+                slots.add(new TimeSlot("dr" + d + "-" + s, "Dr" + d,
+                        LocalTime.of(8 + s, 0), LocalTime.of(9 + s, 0), capacity));
+            }
+        }
+        return slots;
+    }
+
+    private static List<TokenRequest> requests(List<TimeSlot> slots) {
+        Random random = new Random(42);
+        Instant base = Instant.parse("2026-01-01T08:00:00Z");
+        TokenSource[] sources = TokenSource.values();
+        List<TokenRequest> requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            String preferred = random.nextInt(4) == 0 ? null : slots.get(random.nextInt(slots.size())).getId();
+            requests.add(new TokenRequest("R" + i, "P" + i, sources[random.nextInt(sources.length)],
+                    preferred, false, base.plusMillis(random.nextInt(3_600_000))));
+        }
+        return requests;
+    }
+}
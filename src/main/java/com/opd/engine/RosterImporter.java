@@ -0,0 +1,221 @@
+package com.opd.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.opd.engine.model.TimeSlot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a roster of slots into an engine in fixed-size batches, so rosters with
+ * thousands of doctors and days never have to be held in memory as a whole.
+ *
+ * CSV: one slot per line, {@code slotId,doctorId,date,start,end,capacity}. The
+ * date may be empty, a header line and lines starting with {@code #} are skipped.
+ *
+ * JSON: an array of objects with the fields {@code id}, {@code doctorId},
+ * {@code date} (optional), {@code start}, {@code end} and {@code capacity}.
+ *
+ * Slots are validated as they are read. Batches added before an invalid slot stay
+ * in the engine; the {@link ImportException} reports how many that were.
+ */
+public class RosterImporter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final TokenAllocationEngine engine;
+    private final int batchSize;
+
+    public RosterImporter(TokenAllocationEngine engine) {
+        this(engine, DEFAULT_BATCH_SIZE);
+    }
+
+    public RosterImporter(TokenAllocationEngine engine, int batchSize) {
+        this.engine = engine;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return number of slots imported
+     * @throws ImportException on the first invalid line
+     */
+    public int importCsv(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader b ? b : new BufferedReader(source);
+        List<TimeSlot> batch = new ArrayList<>(batchSize);
+        int imported = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && line.startsWith("slotId"))) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 6) {
+                throw new ImportException("Line " + lineNumber + ": expected 6 fields but found " + fields.length, imported, null);
+            }
+            try {
+                batch.add(toSlot(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new ImportException("Line " + lineNumber + ": " + e.getMessage(), imported, e);
+            }
+            if (batch.size() == batchSize) {
+                imported += flush(batch, imported);
+            }
+        }
+        return imported + flush(batch, imported);
+    }
+
+    /**
+     * @return number of slots imported
+     * @throws ImportException on the first invalid slot or malformed JSON
+     */
+    public int importJson(InputStream source) throws IOException {
+        List<TimeSlot> batch = new ArrayList<>(batchSize);
+        int imported = 0;
+        try (JsonParser parser = JSON.createParser(source)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ImportException("Roster JSON must be an array of slots", 0, null);
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                int position = imported + batch.size() + 1;
+                if (token != JsonToken.START_OBJECT) {
+                    throw new ImportException("Slot " + position + ": expected an object but found " + token, imported, null);
+                }
+                try {
+                    String id = null, doctorId = null, date = null, start = null, end = null, capacity = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        switch (field) {
+                            case "id" -> id = readString(parser, value, field);
+                            case "doctorId" -> doctorId = readString(parser, value, field);
+                            case "date" -> date = readString(parser, value, field);
+                            case "start" -> start = readString(parser, value, field);
+                            case "end" -> end = readString(parser, value, field);
+                            case "capacity" -> capacity = readInteger(parser, value, field);
+                            default -> parser.skipChildren();
+                        }
+                    }
+                    batch.add(toSlot(id, doctorId, date, start, end, capacity));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    throw new ImportException("Slot " + position + ": " + e.getMessage(), imported, e);
+                }
+                if (batch.size() == batchSize) {
+                    imported += flush(batch, imported);
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new ImportException("Malformed roster JSON: " + e.getOriginalMessage(), imported, e);
+        }
+        return imported + flush(batch, imported);
+    }
+
+    /**
+     * Adds the batch as a whole; a duplicate slot id rejects the entire batch.
+     */
+    private int flush(List<TimeSlot> batch, int imported) {
+        int size = batch.size();
+        if (size > 0) {
+            try {
+                engine.addSlots(batch);
+            } catch (IllegalArgumentException e) {
+                throw new ImportException(e.getMessage(), imported, e);
+            }
+            batch.clear();
+        }
+        return size;
+    }
+
+    private static String readString(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return parser.getText();
+    }
+
+    /**
+     * A whole number, given as a JSON number or a string.
+     */
+    private static String readInteger(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException(field + " must be a whole number");
+        }
+        return parser.getText();
+    }
+
+    private static TimeSlot toSlot(String id, String doctorId, String date, String start, String end, String capacity) {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("slot id is required");
+        }
+        if (doctorId == null || doctorId.isBlank()) {
+            throw new IllegalArgumentException("doctorId is required");
+        }
+        if (start == null || end == null || capacity == null) {
+            throw new IllegalArgumentException("start, end and capacity are required");
+        }
+        LocalTime startTime = LocalTime.parse(start.trim());
+        LocalTime endTime = LocalTime.parse(end.trim());
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("end must be after start");
+        }
+        int slotCapacity;
+        try {
+            slotCapacity = Integer.parseInt(capacity.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("capacity must be a whole number: " + capacity);
+        }
+        if (slotCapacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        return new TimeSlot(
+                id.trim(),
+                doctorId.trim(),
+                date == null || date.isBlank() ? null : LocalDate.parse(date.trim()),
+                startTime,
+                endTime,
+                slotCapacity
+        );
+    }
+
+    /**
+     * An invalid roster entry. Slots before it may already have been imported.
+     */
+    public static class ImportException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int imported;
+
+        public ImportException(String message, int imported, Throwable cause) {
+            super(message, cause);
+            this.imported = imported;
+        }
+
+        /**
+         * Slots added to the engine before the failure.
+         */
+        public int getImported() {
+            return imported;
+        }
+    }
+}
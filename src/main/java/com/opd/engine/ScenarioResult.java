@@ -0,0 +1,79 @@
+package com.opd.engine;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of one {@link WhatIfScenario} compared with the baseline it was forked from.
+ */
+public class ScenarioResult {
+
+    private final String scenarioName;
+    private final List<String> displacedPatientIds;
+    private final int reassignedCount;
+    private final int waitlistLength;
+    private final int baselineWaitlistLength;
+    private final int allocated;
+    private final int capacity;
+    private final Map<String, Double> utilisationByDoctor;
+
+    public ScenarioResult(String scenarioName,
+                          List<String> displacedPatientIds,
+                          int reassignedCount,
+                          int waitlistLength,
+                          int baselineWaitlistLength,
+                          int allocated,
+                          int capacity,
+                          Map<String, Double> utilisationByDoctor) {
+        this.scenarioName = scenarioName;
+        this.displacedPatientIds = displacedPatientIds;
+        this.reassignedCount = reassignedCount;
+        this.waitlistLength = waitlistLength;
+        this.baselineWaitlistLength = baselineWaitlistLength;
+        this.allocated = allocated;
+        this.capacity = capacity;
+        this.utilisationByDoctor = utilisationByDoctor;
+    }
+
+    public String getScenarioName() {
+        return scenarioName;
+    }
+
+    /**
+     * Patients that held a slot in the baseline but have none in this scenario.
+     */
+    public List<String> getDisplacedPatientIds() {
+        return displacedPatientIds;
+    }
+
+    /**
+     * Patients that still hold a slot, but a different one than in the baseline.
+     */
+    public int getReassignedCount() {
+        return reassignedCount;
+    }
+
+    public int getWaitlistLength() {
+        return waitlistLength;
+    }
+
+    public int getBaselineWaitlistLength() {
+        return baselineWaitlistLength;
+    }
+
+    public int getAllocated() {
+        return allocated;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getUtilisation() {
+        return capacity == 0 ? 0.0 : (double) allocated / capacity;
+    }
+
+    public Map<String, Double> getUtilisationByDoctor() {
+        return utilisationByDoctor;
+    }
+}
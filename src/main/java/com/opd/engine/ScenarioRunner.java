@@ -0,0 +1,121 @@
+package com.opd.engine;
+
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates many {@link WhatIfScenario}s in parallel. The live engine is locked only
+ * once, to take a snapshot; every scenario then runs on its own fork.
+ *
+ * Scenarios are full rebuilds, so the baseline is rebuilt from scratch against the
+ * unchanged roster too. The live placement can differ from a rebuild after runtime
+ * slot changes, which leave existing tokens in place, and comparing against it would
+ * report those differences as reassignments.
+ */
+public class ScenarioRunner {
+
+    private final ForkJoinPool pool;
+
+    public ScenarioRunner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ScenarioRunner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public List<ScenarioResult> run(TokenAllocationEngine engine, List<WhatIfScenario> scenarios) {
+        TokenAllocationEngine snapshot = engine.fork();
+        List<TimeSlot> baselineRoster = List.copyOf(snapshot.getSlots());
+        TokenAllocationEngine baseline = snapshot.fork(baselineRoster);
+        Map<String, String> baselineSlots = slotByRequestId(baseline.getCurrentAllocations());
+        int baselineWaitlist = baseline.getWaitlist().size();
+
+        List<Callable<ScenarioResult>> tasks = new ArrayList<>(scenarios.size());
+        for (WhatIfScenario scenario : scenarios) {
+            tasks.add(() -> evaluate(baseline, baselineRoster, baselineSlots, baselineWaitlist, scenario));
+        }
+
+        List<ScenarioResult> results = new ArrayList<>(scenarios.size());
+        for (Future<ScenarioResult> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Scenario run interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Scenario failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private ScenarioResult evaluate(TokenAllocationEngine baseline,
+                                    List<TimeSlot> baselineRoster,
+                                    Map<String, String> baselineSlots,
+                                    int baselineWaitlist,
+                                    WhatIfScenario scenario) {
+        List<TimeSlot> roster = scenario.applyTo(baselineRoster);
+        TokenAllocationEngine fork = baseline.fork(roster, scenario.getExtraRequests());
+
+        List<AllocatedToken> allocations = fork.getCurrentAllocations();
+        Map<String, String> scenarioSlots = slotByRequestId(allocations);
+        List<TokenRequest> waitlist = fork.getWaitlist();
+
+        List<String> displaced = new ArrayList<>();
+        int reassigned = 0;
+        for (TokenRequest request : waitlist) {
+            if (baselineSlots.containsKey(request.getId())) {
+                displaced.add(request.getPatientId());
+            }
+        }
+        for (Map.Entry<String, String> entry : scenarioSlots.entrySet()) {
+            String before = baselineSlots.get(entry.getKey());
+            if (before != null && !before.equals(entry.getValue())) {
+                reassigned++;
+            }
+        }
+
+        Map<String, Integer> capacityByDoctor = new TreeMap<>();
+        Map<String, String> doctorBySlot = new HashMap<>();
+        int capacity = 0;
+        for (TimeSlot slot : roster) {
+            capacityByDoctor.merge(slot.getDoctorId(), slot.getCapacity(), Integer::sum);
+            doctorBySlot.put(slot.getId(), slot.getDoctorId());
+            capacity += slot.getCapacity();
+        }
+        Map<String, Integer> allocatedByDoctor = new HashMap<>();
+        for (AllocatedToken token : allocations) {
+            allocatedByDoctor.merge(doctorBySlot.get(token.getSlotId()), 1, Integer::sum);
+        }
+        Map<String, Double> utilisationByDoctor = new LinkedHashMap<>();
+        capacityByDoctor.forEach((doctorId, doctorCapacity) -> utilisationByDoctor.put(doctorId,
+                doctorCapacity == 0 ? 0.0 : (double) allocatedByDoctor.getOrDefault(doctorId, 0) / doctorCapacity));
+
+        return new ScenarioResult(
+                scenario.getName(),
+                displaced,
+                reassigned,
+                waitlist.size(),
+                baselineWaitlist,
+                allocations.size(),
+                capacity,
+                utilisationByDoctor
+        );
+    }
+
+    private static Map<String, String> slotByRequestId(List<AllocatedToken> allocations) {
+        Map<String, String> result = new HashMap<>(allocations.size() * 2);
+        for (AllocatedToken token : allocations) {
+            result.put(token.getRequest().getId(), token.getSlotId());
+        }
+        return result;
+    }
+}
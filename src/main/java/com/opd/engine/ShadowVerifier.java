@@ -0,0 +1,234 @@
+package com.opd.engine;
+
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a candidate {@link Allocator} on the same input as every live full rebuild,
+ * on a background thread, and compares slots and sequence numbers request by
+ * request. The live path never waits for the candidate: when the backlog is full
+ * the sample is skipped and counted.
+ */
+public class ShadowVerifier implements AutoCloseable {
+
+    private static final int MAX_PENDING = 16;
+    private static final int MAX_RECENT_DIVERGENCES = 20;
+    private static final int MAX_EXAMPLES = 5;
+
+    private final String candidateName;
+    private final Allocator candidate;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong comparisons = new AtomicLong();
+    private final AtomicLong divergences = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong liveNanos = new AtomicLong();
+    private final AtomicLong candidateNanos = new AtomicLong();
+    private final Deque<Divergence> recentDivergences = new ArrayDeque<>();
+
+    public ShadowVerifier(String candidateName, Allocator candidate) {
+        this.candidateName = candidateName;
+        this.candidate = candidate;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-" + candidateName);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Whether a sample can be queued; counts it as skipped if not. Checked before the
+     * caller copies its state, so a full backlog costs the live path nothing. Only the
+     * owning engine submits, under its lock, so room cannot vanish before {@link #submit}.
+     */
+    boolean hasRoom() {
+        if (executor.getQueue().remainingCapacity() > 0) {
+            return true;
+        }
+        skipped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Queues one comparison. The arguments must be private copies; they are read later
+     * on the shadow thread.
+     */
+    void submit(List<TimeSlot> slots, List<TokenRequest> requests, SlotSelectionStrategy strategy,
+                Map<String, AllocatedToken> live, long liveDurationNanos) {
+        try {
+            executor.execute(() -> compare(slots, requests, strategy, live, liveDurationNanos));
+        } catch (RejectedExecutionException e) {
+            skipped.incrementAndGet();
+        }
+    }
+
+    private void compare(List<TimeSlot> slots, List<TokenRequest> requests, SlotSelectionStrategy strategy,
+                         Map<String, AllocatedToken> live, long liveDurationNanos) {
+        Map<String, AllocatedToken> shadow;
+        long start = System.nanoTime();
+        try {
+            shadow = candidate.allocate(slots, requests, strategy);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            addDivergence(new Divergence(Instant.now(), requests.size(), -1, List.of("candidate failed: " + e)));
+            return;
+        }
+        long candidateDuration = System.nanoTime() - start;
+
+        int mismatched = 0;
+        List<String> examples = new ArrayList<>();
+        for (TokenRequest request : requests) {
+            AllocatedToken expected = live.get(request.getId());
+            AllocatedToken actual = shadow.get(request.getId());
+            if (!samePlacement(expected, actual)) {
+                mismatched++;
+                if (examples.size() < MAX_EXAMPLES) {
+                    examples.add(request.getId() + ": live " + describe(expected) + ", candidate " + describe(actual));
+                }
+            }
+        }
+
+        comparisons.incrementAndGet();
+        liveNanos.addAndGet(liveDurationNanos);
+        candidateNanos.addAndGet(candidateDuration);
+        if (mismatched > 0) {
+            divergences.incrementAndGet();
+            addDivergence(new Divergence(Instant.now(), requests.size(), mismatched, examples));
+        }
+    }
+
+    private static boolean samePlacement(AllocatedToken a, AllocatedToken b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getSlotId().equals(b.getSlotId()) && a.getSequence() == b.getSequence();
+    }
+
+    private static String describe(AllocatedToken token) {
+        return token == null ? "waiting" : token.getSlotId() + " #" + token.getSequence();
+    }
+
+    private synchronized void addDivergence(Divergence divergence) {
+        if (recentDivergences.size() == MAX_RECENT_DIVERGENCES) {
+            recentDivergences.removeFirst();
+        }
+        recentDivergences.addLast(divergence);
+    }
+
+    public synchronized Report report() {
+        return new Report(candidateName, comparisons.get(), divergences.get(), failures.get(), skipped.get(),
+                liveNanos.get(), candidateNanos.get(), new ArrayList<>(recentDivergences));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public static class Divergence {
+        private final Instant detectedAt;
+        private final int requestCount;
+        private final int mismatchedRequests;
+        private final List<String> examples;
+
+        Divergence(Instant detectedAt, int requestCount, int mismatchedRequests, List<String> examples) {
+            this.detectedAt = detectedAt;
+            this.requestCount = requestCount;
+            this.mismatchedRequests = mismatchedRequests;
+            this.examples = examples;
+        }
+
+        public Instant getDetectedAt() {
+            return detectedAt;
+        }
+
+        public int getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * Requests placed differently, or -1 when the candidate threw.
+         */
+        public int getMismatchedRequests() {
+            return mismatchedRequests;
+        }
+
+        public List<String> getExamples() {
+            return examples;
+        }
+    }
+
+    public static class Report {
+        private final String candidate;
+        private final long comparisons;
+        private final long divergences;
+        private final long failures;
+        private final long skipped;
+        private final long liveNanos;
+        private final long candidateNanos;
+        private final List<Divergence> recentDivergences;
+
+        Report(String candidate, long comparisons, long divergences, long failures, long skipped,
+               long liveNanos, long candidateNanos, List<Divergence> recentDivergences) {
+            this.candidate = candidate;
+            this.comparisons = comparisons;
+            this.divergences = divergences;
+            this.failures = failures;
+            this.skipped = skipped;
+            this.liveNanos = liveNanos;
+            this.candidateNanos = candidateNanos;
+            this.recentDivergences = recentDivergences;
+        }
+
+        public String getCandidate() {
+            return candidate;
+        }
+
+        public long getComparisons() {
+            return comparisons;
+        }
+
+        public long getDivergences() {
+            return divergences;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public double getMeanLiveMillis() {
+            return comparisons == 0 ? 0.0 : liveNanos / 1e6 / comparisons;
+        }
+
+        public double getMeanCandidateMillis() {
+            return comparisons == 0 ? 0.0 : candidateNanos / 1e6 / comparisons;
+        }
+
+        /**
+         * Candidate time relative to live time; below 1.0 means the candidate is faster.
+         */
+        public double getRelativeLatency() {
+            return liveNanos == 0 ? 0.0 : (double) candidateNanos / liveNanos;
+        }
+
+        public List<Divergence> getRecentDivergences() {
+            return recentDivergences;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.opd.engine.model.TimeSlot;
 import com.opd.engine.model.TokenRequest;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -52,6 +53,29 @@ public class SimulationRunner {
         engine.cancelRequest(priority.getId());
         engine.markNoShow(emergency.getId());
         printSnapshot(engine);
+
+        System.out.println("\n=== What-if scenarios (evaluated in parallel on forks) ===");
+        List<TokenRequest> surge = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            surge.add(new TokenRequest("P-surge-" + i, TokenSource.WALK_IN, null, false));
+        }
+        List<WhatIfScenario> scenarios = List.of(
+                new WhatIfScenario("DrB calls in sick").withoutDoctor("DrB"),
+                new WhatIfScenario("Add DrA 11:00 slot")
+                        .withSlot(new TimeSlot("drA-11", "DrA", LocalTime.of(11, 0), LocalTime.of(12, 0), 4)),
+                new WhatIfScenario("DrC capacity raised to 4").withCapacity("drC-09", 4).withCapacity("drC-10", 4),
+                new WhatIfScenario("Walk-in surge").withExtraRequests(surge)
+        );
+        for (ScenarioResult result : new ScenarioRunner().run(engine, scenarios)) {
+            System.out.printf("%s: displaced=%s reassigned=%d waitlist=%d (baseline %d) utilisation=%.0f%% %s%n",
+                    result.getScenarioName(),
+                    result.getDisplacedPatientIds(),
+                    result.getReassignedCount(),
+                    result.getWaitlistLength(),
+                    result.getBaselineWaitlistLength(),
+                    result.getUtilisation() * 100,
+                    result.getUtilisationByDoctor());
+        }
     }
 
     private static void printSnapshot(TokenAllocationEngine engine) {
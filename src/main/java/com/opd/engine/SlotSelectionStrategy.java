@@ -0,0 +1,39 @@
+package com.opd.engine;
+
+import com.opd.engine.model.TimeSlot;
+
+import java.util.List;
+
+/**
+ * Decides which slot a request without a preferred slot goes to.
+ *
+ * A strategy hands out a fresh {@link Selector} for every allocation pass (a full
+ * rebuild, or placing waiting requests into free capacity). Within a pass slots
+ * only fill up: the selector is told about every token placed, including tokens
+ * already held and tokens of requests with a preferred slot.
+ */
+public interface SlotSelectionStrategy {
+
+    /** Earliest slot with room; among slots starting together, the first registered. */
+    SlotSelectionStrategy EARLIEST_FIRST = EarliestSlotSelector::new;
+
+    /** Earliest start time with room; among those slots, the one with the shortest queue. */
+    SlotSelectionStrategy LOAD_BALANCED = LoadBalancedSlotSelector::new;
+
+    /**
+     * @param slotsInStartOrder all slots, sorted by {@link TimeSlot#CHRONOLOGICAL}; all start empty
+     */
+    Selector newSelector(List<TimeSlot> slotsInStartOrder);
+
+    interface Selector {
+
+        /**
+         * @return the slot for a request without a preferred slot, or null if every slot is full
+         */
+        TimeSlot select();
+
+        boolean hasRoom(TimeSlot slot);
+
+        void placed(TimeSlot slot);
+    }
+}
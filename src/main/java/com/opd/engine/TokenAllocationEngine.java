@@ -1,5 +1,9 @@
 package com.opd.engine;
 
+import com.opd.engine.diagnostics.EngineLockEvent;
+import com.opd.engine.diagnostics.EngineMutationEvent;
+import com.opd.engine.diagnostics.RebalanceEvent;
+import com.opd.engine.history.StatusHistory;
 import com.opd.engine.model.AllocatedToken;
 import com.opd.engine.model.Enums.TokenSource;
 import com.opd.engine.model.Enums.TokenStatus;
@@ -9,6 +13,10 @@ import com.opd.engine.model.TokenRequest;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -20,60 +28,638 @@ import java.util.stream.Collectors;
  */
 public class TokenAllocationEngine {
 
+    /**
+     * How a full rebuild walks the active requests. Both modes produce the same placement.
+     */
+    public enum RebalanceMode {
+        /** One thread walks every request in allocation order. */
+        SEQUENTIAL,
+        /**
+         * Per-doctor work, including building tokens, runs in parallel; only the ordered
+         * walk over walk-ins is serial. See {@link RebalanceBenchmark} before enabling it.
+         */
+        PARTITIONED
+    }
+
+    /**
+     * Order in which requests are served: highest priority first, then earliest arrival.
+     * The request id breaks ties so the order never depends on map iteration order.
+     */
+    static final Comparator<TokenRequest> ALLOCATION_ORDER = Comparator
+            .comparingInt((TokenRequest r) -> -priorityRank(r.getSource()))
+            .thenComparing(TokenRequest::getCreatedAt)
+            .thenComparing(TokenRequest::getId);
+
     private final Map<String, TimeSlot> slotsById = new LinkedHashMap<>();
     private final Map<String, TokenRequest> requestsById = new ConcurrentHashMap<>();
     private final Map<String, AllocatedToken> allocationsByRequestId = new ConcurrentHashMap<>();
 
     private final Map<String, Integer> slotSequenceCounters = new ConcurrentHashMap<>();
 
+    /** Active requests whose patient has checked in; survives rebuilds, which recreate tokens. */
+    private final Set<String> checkedIn = ConcurrentHashMap.newKeySet();
+
+    /** Slots sorted chronologically, rebuilt whenever the roster changes. */
+    private List<TimeSlot> slotsInStartOrder = List.of();
+
+    private RebalanceMode rebalanceMode = RebalanceMode.SEQUENTIAL;
+    private PartitionedRebalancer partitionedRebalancer;
+    private SlotSelectionStrategy slotSelection = SlotSelectionStrategy.EARLIEST_FIRST;
+
+    /** Status transitions of this engine; forks do not record history. */
+    private StatusHistory history;
+
+    /** Candidate allocator compared against every full rebuild, if enabled; never copied to forks. */
+    private ShadowVerifier shadow;
+
+    /** Told about slots added at runtime, under the engine lock; never copied to forks. */
+    private Consumer<Collection<TimeSlot>> slotsAddedListener;
+
+    /** Told about seats gained or changed by a mutation, under the engine lock; never copied to forks. */
+    private Consumer<Map<String, TimeSlot>> seatsTakenListener;
+
     public TokenAllocationEngine(List<TimeSlot> slots) {
+        this(slots, StatusHistory.DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * @param historyRows rows the status history keeps before it rolls over
+     */
+    public TokenAllocationEngine(List<TimeSlot> slots, int historyRows) {
         for (TimeSlot slot : slots) {
             slotsById.put(slot.getId(), slot);
             slotSequenceCounters.put(slot.getId(), 0);
         }
+        refreshSlotOrder();
+        history = new StatusHistory(historyRows);
     }
 
-    public synchronized TokenRequest addRequest(TokenRequest request) {
-        requestsById.put(request.getId(), request);
-        rebalance();
-        return request;
+    /**
+     * Copy constructor used by {@link #fork()}. Requests are immutable and shared;
+     * allocated tokens are copied because their status is mutable.
+     */
+    private TokenAllocationEngine(TokenAllocationEngine source) {
+        slotsById.putAll(source.slotsById);
+        requestsById.putAll(source.requestsById);
+        slotSequenceCounters.putAll(source.slotSequenceCounters);
+        checkedIn.addAll(source.checkedIn);
+        slotsInStartOrder = source.slotsInStartOrder;
+        rebalanceMode = source.rebalanceMode;
+        partitionedRebalancer = source.partitionedRebalancer;
+        slotSelection = source.slotSelection;
+        for (AllocatedToken token : source.allocationsByRequestId.values()) {
+            allocationsByRequestId.put(token.getRequest().getId(), new AllocatedToken(
+                    token.getTokenId(),
+                    token.getRequest(),
+                    token.getSlotId(),
+                    token.getSequence(),
+                    token.getStatus(),
+                    token.getAllocatedAt()
+            ));
+        }
+    }
+
+    /**
+     * Returns an independent copy of the current engine state. Changes made to the
+     * fork never affect this engine and vice versa.
+     */
+    public TokenAllocationEngine fork() {
+        return read("fork", () -> new TokenAllocationEngine(this));
+    }
+
+    /**
+     * Returns an independent copy that runs the current requests against a different
+     * set of slots. The copy is rebuilt from scratch, so requests that no longer fit
+     * end up unallocated.
+     */
+    public TokenAllocationEngine fork(List<TimeSlot> slots) {
+        return fork(slots, List.of());
     }
 
-    public synchronized void cancelRequest(String requestId) {
-        AllocatedToken token = allocationsByRequestId.remove(requestId);
-        if (token != null) {
-            token.setStatus(TokenStatus.CANCELLED);
+    /**
+     * Like {@link #fork(List)}, with extra requests added before the copy's single
+     * rebuild.
+     */
+    public TokenAllocationEngine fork(List<TimeSlot> slots, Collection<TokenRequest> extraRequests) {
+        TokenAllocationEngine copy = new TokenAllocationEngine(slots);
+        copy.history = null;
+        read("fork", () -> {
+            copy.requestsById.putAll(requestsById);
+            copy.checkedIn.addAll(checkedIn);
+            copy.rebalanceMode = rebalanceMode;
+            copy.partitionedRebalancer = partitionedRebalancer;
+            copy.slotSelection = slotSelection;
+            return copy;
+        });
+        for (TokenRequest request : extraRequests) {
+            copy.requestsById.put(request.getId(), request);
+        }
+        copy.mutate("rebalance", copy::rebalance);
+        return copy;
+    }
+
+    /**
+     * Switches how full rebuilds are computed. Partitioned rebuilds run on the common
+     * fork-join pool.
+     */
+    public void setRebalanceMode(RebalanceMode mode) {
+        setRebalanceMode(mode, ForkJoinPool.commonPool());
+    }
+
+    public void setRebalanceMode(RebalanceMode mode, ForkJoinPool pool) {
+        update("setRebalanceMode", () -> {
+            this.rebalanceMode = mode;
+            this.partitionedRebalancer = mode == RebalanceMode.PARTITIONED ? new PartitionedRebalancer(pool) : null;
+        });
+    }
+
+    public RebalanceMode getRebalanceMode() {
+        return read("getRebalanceMode", () -> rebalanceMode);
+    }
+
+    /**
+     * Starts shadow mode: after every full rebuild, the candidate computes placements
+     * for the same slots, requests and slot selection on a background thread, and the
+     * results are compared with the live ones. Replaces any candidate already running.
+     * To verify against replayed traffic, enable shadow mode on a {@link #fork()}.
+     */
+    public void enableShadow(String name, Allocator candidate) {
+        ShadowVerifier verifier = new ShadowVerifier(name, candidate);
+        ShadowVerifier[] previous = new ShadowVerifier[1];
+        update("enableShadow", () -> {
+            previous[0] = shadow;
+            shadow = verifier;
+        });
+        if (previous[0] != null) {
+            previous[0].close();
         }
-        requestsById.remove(requestId);
-        rebalance();
     }
 
-    public synchronized void markNoShow(String requestId) {
-        AllocatedToken token = allocationsByRequestId.get(requestId);
-        if (token != null) {
-            token.setStatus(TokenStatus.NO_SHOW);
-            allocationsByRequestId.remove(requestId);
-            requestsById.remove(requestId);
+    /**
+     * Stops shadow mode and returns the final report, or null if it was not running.
+     */
+    public ShadowVerifier.Report disableShadow() {
+        ShadowVerifier[] previous = new ShadowVerifier[1];
+        update("disableShadow", () -> {
+            previous[0] = shadow;
+            shadow = null;
+        });
+        if (previous[0] == null) {
+            return null;
+        }
+        previous[0].close();
+        return previous[0].report();
+    }
+
+    /**
+     * Comparisons made by the running candidate so far, or null if shadow mode is off.
+     */
+    public ShadowVerifier.Report getShadowReport() {
+        ShadowVerifier verifier = read("getShadowReport", () -> shadow);
+        return verifier == null ? null : verifier.report();
+    }
+
+    /**
+     * Changes how requests without a preferred slot are placed and rebuilds the
+     * allocation with the new strategy.
+     */
+    public void setSlotSelectionStrategy(SlotSelectionStrategy strategy) {
+        mutate("setSlotSelectionStrategy", () -> {
+            this.slotSelection = strategy;
+            rebalance();
+        });
+    }
+
+    public SlotSelectionStrategy getSlotSelectionStrategy() {
+        return read("getSlotSelectionStrategy", () -> slotSelection);
+    }
+
+    public TokenRequest addRequest(TokenRequest request) {
+        mutate("addRequest", () -> {
+            recordArrival(request);
+            requestsById.put(request.getId(), request);
+            rebalance();
+        });
+        return request;
+    }
+
+    /**
+     * Adds several requests and reallocates once, instead of once per request.
+     */
+    public void addRequests(Collection<TokenRequest> requests) {
+        mutate("addRequests", () -> {
+            for (TokenRequest request : requests) {
+                recordArrival(request);
+                requestsById.put(request.getId(), request);
+            }
             rebalance();
+        });
+    }
+
+    public void cancelRequest(String requestId) {
+        mutate("cancelRequest", () -> {
+            AllocatedToken token = allocationsByRequestId.remove(requestId);
+            if (token != null) {
+                token.setStatus(TokenStatus.CANCELLED);
+            }
+            TokenRequest request = requestsById.remove(requestId);
+            checkedIn.remove(requestId);
+            if (request != null) {
+                recordExit(request, TokenStatus.CANCELLED, token);
+            }
+            rebalance();
+        });
+    }
+
+    public void markNoShow(String requestId) {
+        mutate("markNoShow", () -> {
+            AllocatedToken token = allocationsByRequestId.get(requestId);
+            if (token != null) {
+                token.setStatus(TokenStatus.NO_SHOW);
+                allocationsByRequestId.remove(requestId);
+                requestsById.remove(requestId);
+                checkedIn.remove(requestId);
+                recordExit(token.getRequest(), TokenStatus.NO_SHOW, token);
+                rebalance();
+            }
+        });
+    }
+
+    /**
+     * Records that the patient holding a confirmed token has arrived, which exempts
+     * the token from automatic no-show.
+     *
+     * @return false if the request holds no token
+     */
+    public boolean checkIn(String requestId) {
+        boolean[] found = new boolean[1];
+        update("checkIn", () -> {
+            AllocatedToken token = allocationsByRequestId.get(requestId);
+            if (token == null) {
+                return;
+            }
+            found[0] = true;
+            if (checkedIn.add(requestId)) {
+                token.setStatus(TokenStatus.CHECKED_IN);
+                if (history != null) {
+                    TokenRequest request = token.getRequest();
+                    history.append(request.getId(), request.getSource(), TokenStatus.CHECKED_IN, null, null, null, null);
+                }
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Marks as no-show every token whose patient has not checked in and that sits in
+     * one of the given slots, or is one of the given requests still in the given slot,
+     * and reallocates once for all of them. Deadlines that expire together must be
+     * passed together, so a rebuild for one cannot move patients into another that is
+     * about to be swept.
+     *
+     * @param slotIds         slots whose deadline has passed
+     * @param slotByRequestId requests whose own deadline has passed, with the slot it was set for
+     * @return number of tokens marked
+     */
+    public int markNoShows(Collection<String> slotIds, Map<String, String> slotByRequestId) {
+        int[] marked = new int[1];
+        mutate("markNoShows", () -> {
+            Set<String> expired = new HashSet<>(slotIds);
+            for (AllocatedToken token : new ArrayList<>(allocationsByRequestId.values())) {
+                String requestId = token.getRequest().getId();
+                boolean due = expired.contains(token.getSlotId())
+                        || token.getSlotId().equals(slotByRequestId.get(requestId));
+                if (token.getStatus() != TokenStatus.CONFIRMED || !due) {
+                    continue;
+                }
+                token.setStatus(TokenStatus.NO_SHOW);
+                allocationsByRequestId.remove(requestId);
+                requestsById.remove(requestId);
+                recordExit(token.getRequest(), TokenStatus.NO_SHOW, token);
+                marked[0]++;
+            }
+            if (marked[0] > 0) {
+                rebalance();
+            }
+        });
+        return marked[0];
+    }
+
+    /**
+     * Adds slots to the roster at runtime. Existing tokens stay where they are; waiting
+     * requests are placed into the new capacity.
+     */
+    public void addSlots(Collection<TimeSlot> slots) {
+        mutate("addSlots", () -> addSlotsLocked(slots));
+    }
+
+    private void addSlotsLocked(Collection<TimeSlot> slots) {
+        Set<String> added = new HashSet<>();
+        for (TimeSlot slot : slots) {
+            if (slotsById.containsKey(slot.getId()) || !added.add(slot.getId())) {
+                throw new IllegalArgumentException("Slot already exists: " + slot.getId());
+            }
         }
+        for (TimeSlot slot : slots) {
+            slotsById.put(slot.getId(), slot);
+            slotSequenceCounters.put(slot.getId(), 0);
+        }
+        refreshSlotOrder();
+
+        placeIntoFreeCapacity(waitingRequests());
+        if (slotsAddedListener != null) {
+            slotsAddedListener.accept(slots);
+        }
+    }
+
+    /**
+     * Registers the callback told about slots added through {@link #addSlots}, or
+     * removes it when null. It runs under the engine lock and must not call back
+     * into the engine.
+     */
+    public void setSlotsAddedListener(Consumer<Collection<TimeSlot>> listener) {
+        update("setSlotsAddedListener", () -> slotsAddedListener = listener);
     }
 
-    public synchronized List<AllocatedToken> getCurrentAllocations() {
-        return new ArrayList<>(allocationsByRequestId.values());
+    /**
+     * Registers the callback told, after each state change, which requests gained a
+     * seat or moved to another slot (request id to new slot), or removes it when null.
+     * It runs under the engine lock and must not call back into the engine.
+     */
+    public void setSeatsTakenListener(Consumer<Map<String, TimeSlot>> listener) {
+        update("setSeatsTakenListener", () -> seatsTakenListener = listener);
     }
 
-    public synchronized List<AllocatedToken> getAllocationsForSlot(String slotId) {
+    /**
+     * Removes slots from the roster at runtime. Tokens held in the removed slots are
+     * re-placed into free capacity elsewhere; all other tokens keep their slot and
+     * sequence.
+     */
+    public void removeSlots(Collection<String> slotIds) {
+        mutate("removeSlots", () -> removeSlotsLocked(slotIds));
+    }
+
+    private void removeSlotsLocked(Collection<String> slotIds) {
+        Set<String> removed = new HashSet<>();
+        for (String slotId : slotIds) {
+            if (slotsById.remove(slotId) != null) {
+                slotSequenceCounters.remove(slotId);
+                removed.add(slotId);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        refreshSlotOrder();
+
+        List<TokenRequest> displaced = new ArrayList<>();
+        // Waiting requests that preferred a removed slot can now go anywhere.
+        for (TokenRequest request : waitingRequests()) {
+            if (request.getPreferredSlotId() != null && removed.contains(request.getPreferredSlotId())) {
+                displaced.add(request);
+            }
+        }
+        for (Iterator<AllocatedToken> it = allocationsByRequestId.values().iterator(); it.hasNext(); ) {
+            AllocatedToken token = it.next();
+            if (removed.contains(token.getSlotId())) {
+                displaced.add(token.getRequest());
+                it.remove();
+            }
+        }
+        displaced.sort(ALLOCATION_ORDER);
+        placeIntoFreeCapacity(displaced);
+    }
+
+    /**
+     * Changes a slot's capacity at runtime. Raising it fills the new seats from the
+     * waitlist; lowering it moves the latest tokens of that slot to free capacity
+     * elsewhere, or to the waitlist. Tokens in other slots are never moved.
+     */
+    public void updateCapacity(String slotId, int capacity) {
+        mutate("updateCapacity", () -> updateCapacityLocked(slotId, capacity));
+    }
+
+    private void updateCapacityLocked(String slotId, int capacity) {
+        TimeSlot slot = slotsById.get(slotId);
+        if (slot == null) {
+            throw new IllegalArgumentException("Slot not found: " + slotId);
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        TimeSlot updated = slot.withCapacity(capacity);
+        slotsById.put(slotId, updated);
+        refreshSlotOrder();
+
+        if (capacity >= slot.getCapacity()) {
+            placeIntoFreeCapacity(waitingRequests());
+            return;
+        }
+
+        List<AllocatedToken> tokens = allocationsForSlot(slotId);
+        int kept = Math.min(capacity, tokens.size());
+        List<TokenRequest> trimmed = new ArrayList<>();
+        for (AllocatedToken token : tokens.subList(kept, tokens.size())) {
+            allocationsByRequestId.remove(token.getRequest().getId());
+            trimmed.add(token.getRequest());
+        }
+        slotSequenceCounters.put(slotId, kept == 0 ? 0 : tokens.get(kept - 1).getSequence());
+        trimmed.sort(ALLOCATION_ORDER);
+        placeIntoFreeCapacity(trimmed);
+    }
+
+    public List<AllocatedToken> getCurrentAllocations() {
+        return read("getCurrentAllocations", () -> new ArrayList<>(allocationsByRequestId.values()));
+    }
+
+    public List<AllocatedToken> getAllocationsForSlot(String slotId) {
+        return read("getAllocationsForSlot", () -> allocationsForSlot(slotId));
+    }
+
+    private List<AllocatedToken> allocationsForSlot(String slotId) {
         return allocationsByRequestId.values().stream()
                 .filter(t -> t.getSlotId().equals(slotId))
                 .sorted(Comparator.comparingInt(AllocatedToken::getSequence))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Active requests that currently have no slot, in allocation order.
+     */
+    public List<TokenRequest> getWaitlist() {
+        return read("getWaitlist", this::waitingRequests);
+    }
+
+    private List<TokenRequest> waitingRequests() {
+        return requestsById.values().stream()
+                .filter(r -> !allocationsByRequestId.containsKey(r.getId()))
+                .sorted(ALLOCATION_ORDER)
+                .collect(Collectors.toList());
+    }
+
     public Collection<TimeSlot> getSlots() {
-        return slotsById.values();
+        return read("getSlots", () -> new ArrayList<>(slotsById.values()));
+    }
+
+    public TimeSlot getSlot(String slotId) {
+        return read("getSlot", () -> slotsById.get(slotId));
+    }
+
+    /**
+     * Status transitions recorded so far. Reading it never takes the engine lock.
+     */
+    public StatusHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Runs a state change under the engine lock, recording the lock wait and the
+     * operation itself as flight recorder events, and records every token that
+     * gained, changed or lost a seat in the history.
+     */
+    private void mutate(String operation, Runnable action) {
+        locked(operation, action, true);
+    }
+
+    /**
+     * Like {@link #mutate} for operations that never move tokens, which skips
+     * comparing seats before and after.
+     */
+    private void update(String operation, Runnable action) {
+        locked(operation, action, false);
+    }
+
+    private void locked(String operation, Runnable action, boolean recordSeats) {
+        EngineLockEvent lockEvent = new EngineLockEvent();
+        lockEvent.begin();
+        synchronized (this) {
+            lockEvent.end();
+            if (lockEvent.shouldCommit()) {
+                lockEvent.operation = operation;
+                lockEvent.commit();
+            }
+            EngineMutationEvent event = new EngineMutationEvent();
+            event.begin();
+            Map<String, TimeSlot> seatsBefore = recordSeats && (history != null || seatsTakenListener != null)
+                    ? seatAssignments() : null;
+            try {
+                action.run();
+            } finally {
+                if (seatsBefore != null) {
+                    recordSeatChanges(seatsBefore);
+                }
+                if (history != null) {
+                    if (history.isFull()) {
+                        restartHistory();
+                    }
+                    history.publish();
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.operation = operation;
+                    event.requestCount = requestsById.size();
+                    event.allocatedCount = allocationsByRequestId.size();
+                    event.commit();
+                }
+            }
+        }
     }
 
-    private int priorityRank(TokenSource source) {
+    private Map<String, TimeSlot> seatAssignments() {
+        Map<String, TimeSlot> seats = new HashMap<>(allocationsByRequestId.size() * 2);
+        for (AllocatedToken token : allocationsByRequestId.values()) {
+            seats.put(token.getRequest().getId(), slotsById.get(token.getSlotId()));
+        }
+        return seats;
+    }
+
+    /**
+     * Records requests that gained, changed or lost a seat during a mutation, and
+     * tells the seats-taken listener about the gained and changed ones.
+     */
+    private void recordSeatChanges(Map<String, TimeSlot> seatsBefore) {
+        Map<String, TimeSlot> taken = new HashMap<>();
+        for (AllocatedToken token : allocationsByRequestId.values()) {
+            TokenRequest request = token.getRequest();
+            TimeSlot previous = seatsBefore.remove(request.getId());
+            if (previous == null || !previous.getId().equals(token.getSlotId())) {
+                TimeSlot slot = slotsById.get(token.getSlotId());
+                taken.put(request.getId(), slot);
+                if (history != null) {
+                    history.append(request.getId(), request.getSource(), TokenStatus.CONFIRMED,
+                            slot.getId(), slot.getDoctorId(),
+                            previous == null ? null : previous.getId(), previous == null ? null : previous.getDoctorId());
+                }
+            }
+        }
+        if (seatsTakenListener != null && !taken.isEmpty()) {
+            seatsTakenListener.accept(taken);
+        }
+        if (history == null) {
+            return;
+        }
+        for (Map.Entry<String, TimeSlot> lost : seatsBefore.entrySet()) {
+            // Cancelled and no-show requests are recorded explicitly and are no longer active.
+            TokenRequest request = requestsById.get(lost.getKey());
+            if (request != null) {
+                history.append(request.getId(), request.getSource(), TokenStatus.PENDING,
+                        null, null, lost.getValue().getId(), lost.getValue().getDoctorId());
+            }
+        }
+    }
+
+    /**
+     * Rolls the full history over and records the current state as its first rows:
+     * every active request, its seat and whether the patient has checked in.
+     */
+    private void restartHistory() {
+        history.clear();
+        for (TokenRequest request : requestsById.values()) {
+            history.append(request.getId(), request.getSource(), TokenStatus.PENDING, null, null, null, null);
+        }
+        for (AllocatedToken token : allocationsByRequestId.values()) {
+            TokenRequest request = token.getRequest();
+            TimeSlot slot = slotsById.get(token.getSlotId());
+            history.append(request.getId(), request.getSource(), TokenStatus.CONFIRMED,
+                    slot.getId(), slot.getDoctorId(), null, null);
+            if (checkedIn.contains(request.getId())) {
+                history.append(request.getId(), request.getSource(), TokenStatus.CHECKED_IN, null, null, null, null);
+            }
+        }
+    }
+
+    private void recordArrival(TokenRequest request) {
+        if (history != null && !requestsById.containsKey(request.getId())) {
+            history.append(request.getId(), request.getSource(), TokenStatus.PENDING, null, null, null, null);
+        }
+    }
+
+    private void recordExit(TokenRequest request, TokenStatus status, AllocatedToken token) {
+        if (history == null) {
+            return;
+        }
+        TimeSlot slot = token == null ? null : slotsById.get(token.getSlotId());
+        history.append(request.getId(), request.getSource(), status, null, null,
+                slot == null ? null : slot.getId(), slot == null ? null : slot.getDoctorId());
+    }
+
+    /**
+     * Runs a read under the engine lock, recording the lock wait.
+     */
+    private <T> T read(String operation, Supplier<T> action) {
+        EngineLockEvent lockEvent = new EngineLockEvent();
+        lockEvent.begin();
+        synchronized (this) {
+            lockEvent.end();
+            if (lockEvent.shouldCommit()) {
+                lockEvent.operation = operation;
+                lockEvent.commit();
+            }
+            return action.get();
+        }
+    }
+
+    private static int priorityRank(TokenSource source) {
         return switch (source) {
             case EMERGENCY -> 5;
             case PRIORITY -> 4;
@@ -89,52 +675,138 @@ public class TokenAllocationEngine {
      * earlier requests win.
      */
     private void rebalance() {
+        RebalanceEvent event = new RebalanceEvent();
+        event.begin();
+        long start = System.nanoTime();
+
         allocationsByRequestId.clear();
         slotSequenceCounters.replaceAll((slotId, ignored) -> 0);
 
+        if (rebalanceMode == RebalanceMode.PARTITIONED) {
+            rebalancePartitioned();
+        } else {
+            rebalanceSequential();
+        }
+        for (String requestId : checkedIn) {
+            AllocatedToken token = allocationsByRequestId.get(requestId);
+            if (token != null) {
+                token.setStatus(TokenStatus.CHECKED_IN);
+            }
+        }
+
+        if (shadow != null && shadow.hasRoom()) {
+            shadow.submit(new ArrayList<>(slotsById.values()), new ArrayList<>(requestsById.values()), slotSelection,
+                    new HashMap<>(allocationsByRequestId), System.nanoTime() - start);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.mode = rebalanceMode.name();
+            event.requestCount = requestsById.size();
+            event.slotCount = slotsById.size();
+            event.allocatedCount = allocationsByRequestId.size();
+            event.commit();
+        }
+    }
+
+    private void rebalanceSequential() {
         List<TokenRequest> sortedRequests = requestsById.values().stream()
-                .sorted(Comparator
-                        .comparingInt((TokenRequest r) -> -priorityRank(r.getSource()))
-                        .thenComparing(TokenRequest::getCreatedAt))
+                .sorted(ALLOCATION_ORDER)
                 .toList();
 
+        SlotSelectionStrategy.Selector selector = slotSelection.newSelector(slotsInStartOrder);
         for (TokenRequest request : sortedRequests) {
-            List<TimeSlot> candidateSlots = determineCandidateSlots(request);
-
-            for (TimeSlot slot : candidateSlots) {
-                int used = (int) allocationsByRequestId.values().stream()
-                        .filter(t -> t.getSlotId().equals(slot.getId()))
-                        .count();
-
-                if (used < slot.getCapacity()) {
-                    int nextSeq = slotSequenceCounters.compute(slot.getId(), (id, current) -> current == null ? 1 : current + 1);
-                    AllocatedToken token = new AllocatedToken(
-                            UUID.randomUUID().toString(),
-                            request,
-                            slot.getId(),
-                            nextSeq,
-                            TokenStatus.CONFIRMED,
-                            Instant.now()
-                    );
-                    allocationsByRequestId.put(request.getId(), token);
-                    break;
-                }
-            }
+            placeRequest(request, selector);
         }
     }
 
-    private List<TimeSlot> determineCandidateSlots(TokenRequest request) {
-        if (request.getPreferredSlotId() != null) {
-            TimeSlot preferred = slotsById.get(request.getPreferredSlotId());
-            if (preferred != null) {
-                return List.of(preferred);
+    /**
+     * Same placement as the sequential walk, computed by {@link PartitionedRebalancer}.
+     */
+    private void rebalancePartitioned() {
+        partitionedRebalancer.allocate(slotsById.values(), slotsInStartOrder, slotSelection,
+                requestsById.values(), allocationsByRequestId, slotSequenceCounters);
+    }
+
+    /**
+     * A random (version 4) UUID for a new token. Token ids only need to be unique, so
+     * they come from the calling thread's generator rather than the SecureRandom behind
+     * {@link UUID#randomUUID()}, which every thread building tokens would contend for.
+     */
+    static String newTokenId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    /**
+     * Full rebuild of the given requests on a private engine that records no history.
+     * Backs {@link Allocator#of}.
+     */
+    static Map<String, AllocatedToken> rebuild(List<TimeSlot> slots, Collection<TokenRequest> requests,
+                                               RebalanceMode mode, SlotSelectionStrategy strategy, ForkJoinPool pool) {
+        TokenAllocationEngine engine = new TokenAllocationEngine(slots);
+        engine.history = null;
+        for (TokenRequest request : requests) {
+            engine.requestsById.put(request.getId(), request);
+        }
+        engine.rebalanceMode = mode;
+        engine.partitionedRebalancer = mode == RebalanceMode.PARTITIONED ? new PartitionedRebalancer(pool) : null;
+        engine.slotSelection = strategy;
+        engine.rebalance();
+        return engine.allocationsByRequestId;
+    }
+
+    /**
+     * Places a request into its preferred slot if that slot exists and has room, or,
+     * without a usable preferred slot, into the slot chosen by the selection strategy.
+     */
+    private void placeRequest(TokenRequest request, SlotSelectionStrategy.Selector selector) {
+        TimeSlot slot = request.getPreferredSlotId() == null ? null : slotsById.get(request.getPreferredSlotId());
+        if (slot != null) {
+            if (!selector.hasRoom(slot)) {
+                return;
+            }
+        } else {
+            slot = selector.select();
+            if (slot == null) {
+                return;
             }
         }
+        selector.placed(slot);
+        int nextSeq = slotSequenceCounters.merge(slot.getId(), 1, Integer::sum);
+        allocationsByRequestId.put(request.getId(), new AllocatedToken(
+                newTokenId(),
+                request,
+                slot.getId(),
+                nextSeq,
+                checkedIn.contains(request.getId()) ? TokenStatus.CHECKED_IN : TokenStatus.CONFIRMED,
+                Instant.now()
+        ));
+    }
 
-        // No explicit slot: assign to earliest available slot of any doctor.
-        return slotsById.values().stream()
-                .sorted(Comparator.comparing(TimeSlot::getStart))
-                .collect(Collectors.toList());
+    /**
+     * Places each request, in the given order, into free capacity without moving any
+     * existing token. Requests that fit nowhere stay waiting.
+     */
+    private void placeIntoFreeCapacity(List<TokenRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        SlotSelectionStrategy.Selector selector = slotSelection.newSelector(slotsInStartOrder);
+        for (AllocatedToken token : allocationsByRequestId.values()) {
+            selector.placed(slotsById.get(token.getSlotId()));
+        }
+        for (TokenRequest request : requests) {
+            placeRequest(request, selector);
+        }
+    }
+
+    private void refreshSlotOrder() {
+        List<TimeSlot> ordered = new ArrayList<>(slotsById.values());
+        ordered.sort(TimeSlot.CHRONOLOGICAL);
+        slotsInStartOrder = List.copyOf(ordered);
     }
 }
 
@@ -0,0 +1,175 @@
+package com.opd.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.TokenRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Typed body of {@code POST /tokens/request}, read token by token straight from the
+ * request stream. Field names come from Jackson's symbol table and the source enum
+ * is matched on the parser's character buffer, so no intermediate map or strings
+ * are built besides the id values themselves.
+ */
+public class TokenRequestPayload {
+
+    private static final TokenSource[] SOURCES = TokenSource.values();
+
+    private String patientId;
+    private TokenSource source;
+    private String preferredSlotId;
+    private boolean followUp;
+
+    public static TokenRequestPayload read(JsonFactory factory, InputStream body) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidPayloadException(null, "Request body must be a JSON object");
+            }
+            TokenRequestPayload payload = new TokenRequestPayload();
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "patientId" -> payload.patientId = readString(parser, value, field);
+                    case "preferredSlotId" -> payload.preferredSlotId = readString(parser, value, field);
+                    case "source" -> payload.source = readSource(parser, value);
+                    case "followUp" -> payload.followUp = readBoolean(value, field);
+                    default -> parser.skipChildren();
+                }
+            }
+            payload.validate();
+            return payload;
+        }
+    }
+
+    /**
+     * Builds a payload from already parsed values, e.g. form parameters, with the
+     * same validation as the JSON body.
+     */
+    public static TokenRequestPayload of(String patientId, TokenSource source, String preferredSlotId, boolean followUp) {
+        TokenRequestPayload payload = new TokenRequestPayload();
+        payload.patientId = patientId;
+        payload.source = source;
+        payload.preferredSlotId = preferredSlotId;
+        payload.followUp = followUp;
+        payload.validate();
+        return payload;
+    }
+
+    public TokenRequest toTokenRequest() {
+        return new TokenRequest(patientId, source, preferredSlotId, followUp);
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public TokenSource getSource() {
+        return source;
+    }
+
+    public String getPreferredSlotId() {
+        return preferredSlotId;
+    }
+
+    public boolean isFollowUp() {
+        return followUp;
+    }
+
+    /**
+     * Case-insensitive lookup of a token source, e.g. for form parameters.
+     */
+    public static TokenSource sourceOf(String name) {
+        if (name != null) {
+            for (TokenSource candidate : SOURCES) {
+                if (candidate.name().equalsIgnoreCase(name)) {
+                    return candidate;
+                }
+            }
+        }
+        throw new InvalidPayloadException("source", "Unknown token source: " + name);
+    }
+
+    private void validate() {
+        if (patientId == null || patientId.isBlank()) {
+            throw new InvalidPayloadException("patientId", "patientId is required");
+        }
+        if (source == null) {
+            throw new InvalidPayloadException("source", "source is required");
+        }
+        if (preferredSlotId != null && preferredSlotId.isEmpty()) {
+            preferredSlotId = null;
+        }
+    }
+
+    private static String readString(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_STRING) {
+            throw new InvalidPayloadException(field, field + " must be a string");
+        }
+        return parser.getText();
+    }
+
+    private static boolean readBoolean(JsonToken value, String field) {
+        return switch (value) {
+            case VALUE_TRUE -> true;
+            case VALUE_FALSE, VALUE_NULL -> false;
+            default -> throw new InvalidPayloadException(field, field + " must be a boolean");
+        };
+    }
+
+    private static TokenSource readSource(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_STRING) {
+            throw new InvalidPayloadException("source", "source must be a string");
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        for (TokenSource candidate : SOURCES) {
+            if (matchesIgnoreCase(candidate.name(), chars, offset, length)) {
+                return candidate;
+            }
+        }
+        throw new InvalidPayloadException("source", "Unknown token source: " + parser.getText());
+    }
+
+    private static boolean matchesIgnoreCase(String constant, char[] chars, int offset, int length) {
+        if (constant.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (constant.charAt(i) != Character.toUpperCase(chars[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A well-formed body with a missing or invalid field.
+     */
+    public static class InvalidPayloadException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String field;
+
+        public InvalidPayloadException(String field, String message) {
+            super(message);
+            this.field = field;
+        }
+
+        public String getField() {
+            return field;
+        }
+    }
+}
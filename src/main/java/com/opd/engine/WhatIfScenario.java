@@ -0,0 +1,80 @@
+package com.opd.engine;
+
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+
+import java.util.*;
+
+/**
+ * A roster or demand change to evaluate against a copy of the live engine, e.g.
+ * "DrB calls in sick" or "add a 12:00 slot". Scenarios never touch the engine they
+ * are evaluated against.
+ */
+public class WhatIfScenario {
+
+    private final String name;
+    private final Set<String> removedDoctorIds = new HashSet<>();
+    private final Set<String> removedSlotIds = new HashSet<>();
+    private final List<TimeSlot> addedSlots = new ArrayList<>();
+    private final Map<String, Integer> capacityOverrides = new HashMap<>();
+    private final List<TokenRequest> extraRequests = new ArrayList<>();
+
+    public WhatIfScenario(String name) {
+        this.name = name;
+    }
+
+    public WhatIfScenario withoutDoctor(String doctorId) {
+        removedDoctorIds.add(doctorId);
+        return this;
+    }
+
+    public WhatIfScenario withoutSlot(String slotId) {
+        removedSlotIds.add(slotId);
+        return this;
+    }
+
+    public WhatIfScenario withSlot(TimeSlot slot) {
+        addedSlots.add(slot);
+        return this;
+    }
+
+    public WhatIfScenario withCapacity(String slotId, int capacity) {
+        capacityOverrides.put(slotId, capacity);
+        return this;
+    }
+
+    /**
+     * Extra demand on top of the requests already in the engine.
+     */
+    public WhatIfScenario withExtraRequests(Collection<TokenRequest> requests) {
+        extraRequests.addAll(requests);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<TokenRequest> getExtraRequests() {
+        return Collections.unmodifiableList(extraRequests);
+    }
+
+    /**
+     * Builds the slot list this scenario runs against, keeping the original slot order.
+     */
+    List<TimeSlot> applyTo(Collection<TimeSlot> slots) {
+        List<TimeSlot> result = new ArrayList<>(slots.size() + addedSlots.size());
+        for (TimeSlot slot : slots) {
+            if (removedSlotIds.contains(slot.getId()) || removedDoctorIds.contains(slot.getDoctorId())) {
+                continue;
+            }
+            Integer capacity = capacityOverrides.get(slot.getId());
+            if (capacity != null) {
+                slot = slot.withCapacity(capacity);
+            }
+            result.add(slot);
+        }
+        result.addAll(addedSlots);
+        return result;
+    }
+}
@@ -0,0 +1,25 @@
+package com.opd.engine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Time a caller spent waiting to acquire the engine lock. Only waits above the
+ * threshold are recorded, so uncontended calls cost nothing.
+ */
+@Name("com.opd.engine.LockWait")
+@Label("Engine Lock Wait")
+@Category({"OPD", "Engine"})
+@Description("Time spent waiting to acquire the engine lock")
+@Threshold("1 ms")
+@StackTrace(false)
+public class EngineLockEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+}
@@ -0,0 +1,28 @@
+package com.opd.engine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A state-changing engine call, measured while the engine lock is held.
+ */
+@Name("com.opd.engine.Mutation")
+@Label("Engine Mutation")
+@Category({"OPD", "Engine"})
+@Description("State-changing engine operation, excluding the time spent waiting for the lock")
+@StackTrace(false)
+public class EngineMutationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Active Requests")
+    public int requestCount;
+
+    @Label("Allocated Tokens")
+    public int allocatedCount;
+}
@@ -0,0 +1,73 @@
+package com.opd.engine.diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Starts, dumps and stops a continuous, low-overhead JDK Flight Recorder recording
+ * with the JDK "default" settings plus the engine events. Events that capture the
+ * process environment, system and security properties, JVM arguments and the
+ * command lines of other processes are left out, since the dump is handed out over
+ * HTTP.
+ */
+public class FlightRecorderControl {
+
+    private static final Duration MAX_AGE = Duration.ofHours(1);
+    private static final long MAX_SIZE_BYTES = 256L * 1024 * 1024;
+
+    private Recording recording;
+
+    /**
+     * @return false if a recording was already running
+     */
+    public synchronized boolean start() throws IOException, ParseException {
+        if (isRunning()) {
+            return false;
+        }
+        Recording created = new Recording(Configuration.getConfiguration("default"));
+        created.setName("opd-continuous");
+        created.setToDisk(true);
+        created.setMaxAge(MAX_AGE);
+        created.setMaxSize(MAX_SIZE_BYTES);
+        created.enable(RebalanceEvent.class);
+        created.enable(EngineMutationEvent.class);
+        created.enable(EngineLockEvent.class).withThreshold(Duration.ofMillis(1));
+        created.enable(HttpRequestEvent.class);
+        created.disable("jdk.InitialEnvironmentVariable");
+        created.disable("jdk.InitialSystemProperty");
+        created.disable("jdk.JVMInformation");
+        created.disable("jdk.InitialSecurityProperty");
+        created.disable("jdk.SystemProcess");
+        created.start();
+        recording = created;
+        return true;
+    }
+
+    /**
+     * Writes everything recorded so far to {@code target}; the recording keeps running.
+     */
+    public synchronized Path dump(Path target) throws IOException {
+        if (!isRunning()) {
+            throw new IllegalStateException("No flight recording is running");
+        }
+        recording.dump(target);
+        return target;
+    }
+
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+}
@@ -0,0 +1,31 @@
+package com.opd.engine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Handling of one HTTP request, from the first before-handler to the last after-handler.
+ */
+@Name("com.opd.engine.HttpRequest")
+@Label("HTTP Request")
+@Category({"OPD", "HTTP"})
+@Description("Handling time of one HTTP request per route")
+@StackTrace(false)
+public class HttpRequestEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Route")
+    public String route;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,31 @@
+package com.opd.engine.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One full rebuild of the allocation. The event duration is the rebuild time.
+ */
+@Name("com.opd.engine.Rebalance")
+@Label("Rebalance")
+@Category({"OPD", "Engine"})
+@Description("Full rebuild of all token allocations")
+@StackTrace(false)
+public class RebalanceEvent extends Event {
+
+    @Label("Mode")
+    public String mode;
+
+    @Label("Active Requests")
+    public int requestCount;
+
+    @Label("Slots")
+    public int slotCount;
+
+    @Label("Allocated Tokens")
+    public int allocatedCount;
+}
@@ -0,0 +1,453 @@
+package com.opd.engine.history;
+
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.Enums.TokenStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Append-only, column-oriented log of token status transitions.
+ *
+ * Each transition is one row spread over primitive arrays: timestamp, request,
+ * slot the request moved into, slot it left, source and status. Ids are
+ * dictionary-encoded to ints. A single writer (the engine, under its lock) appends
+ * rows and then publishes them; readers work on the last published snapshot
+ * and never take the engine lock.
+ *
+ * Row meaning:
+ * - PENDING, no slots: request received
+ * - PENDING, previous slot only: request lost its seat and is waiting again
+ * - CONFIRMED, slot (and maybe previous slot): request got or moved to a seat
+ * - CANCELLED / NO_SHOW, previous slot if it held one
+ * - CHECKED_IN, no slots: patient arrived at the desk
+ *
+ * The log holds at most about {@code maxRows} rows. Once the owner sees it
+ * {@link #isFull()} it {@link #clear()}s it and records the current state again.
+ * Requests that had already finished (cancelled or no-show) are folded into
+ * per-doctor and per-source totals first, so rates and source mix still cover
+ * everything since the log was created; fill curves restart at the rollover.
+ */
+public class StatusHistory {
+
+    public static final int NO_SLOT = -1;
+
+    public static final int DEFAULT_MAX_ROWS = 1 << 20;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final TokenSource[] SOURCES = TokenSource.values();
+
+    private final Map<String, Integer> requestIndex = new HashMap<>();
+    private final Map<String, Integer> slotIndex = new HashMap<>();
+    private final Map<String, Integer> doctorIndex = new HashMap<>();
+    private final int maxRows;
+
+    private Columns columns = new Columns(INITIAL_CAPACITY);
+    private int rows;
+    private int slots;
+    private int doctors;
+
+    /** Totals of requests that finished before the last rollover. */
+    private Map<String, DoctorStats> retainedDoctors = Map.of();
+    private int[] retainedSources = new int[SOURCES.length];
+
+    private volatile Snapshot published = new Snapshot(columns, 0, 0, 0, 0, retainedDoctors, retainedSources);
+
+    public StatusHistory() {
+        this(DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * @param maxRows rows after which the owner should roll the log over; appends
+     *                beyond it still succeed until then
+     */
+    public StatusHistory(int maxRows) {
+        if (maxRows <= 0) {
+            throw new IllegalArgumentException("maxRows must be positive");
+        }
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Appends a row. Not visible to readers until {@link #publish()}.
+     */
+    public synchronized void append(String requestId,
+                                    TokenSource source,
+                                    TokenStatus status,
+                                    String slotId,
+                                    String doctorId,
+                                    String previousSlotId,
+                                    String previousDoctorId) {
+        if (rows == columns.timestamps.length) {
+            columns = columns.grow(columns.timestamps.length * 2, columns.slotNames.length, columns.doctorNames.length);
+        }
+        Columns c = columns;
+        c.timestamps[rows] = System.currentTimeMillis();
+        c.requests[rows] = intern(requestIndex, requestId);
+        c.slots[rows] = slotOf(slotId, doctorId);
+        c.previousSlots[rows] = slotOf(previousSlotId, previousDoctorId);
+        c.sources[rows] = (byte) source.ordinal();
+        c.statuses[rows] = (byte) status.ordinal();
+        rows++;
+    }
+
+    /**
+     * Makes all appended rows visible to readers.
+     */
+    public synchronized void publish() {
+        if (published.rows != rows || published.slots != slots || published.doctors != doctors
+                || published.columns != columns) {
+            published = new Snapshot(columns, rows, requestIndex.size(), slots, doctors, retainedDoctors, retainedSources);
+        }
+    }
+
+    public int size() {
+        return published.rows;
+    }
+
+    /**
+     * True once {@code maxRows} rows have been appended since the last {@link #clear()}.
+     */
+    public synchronized boolean isFull() {
+        return rows >= maxRows;
+    }
+
+    /**
+     * Drops every row and id dictionary, after adding the requests that finished to
+     * the retained totals. Requests still active are not retained; the owner records
+     * them again. Readers keep the last published snapshot until the next
+     * {@link #publish()}.
+     */
+    public synchronized void clear() {
+        Columns c = columns;
+        int requests = requestIndex.size();
+        int[] seat = new int[requests];
+        int[] outcome = new int[requests];
+        replay(c, rows, seat, outcome);
+
+        Map<String, DoctorStats> doctorTotals = new HashMap<>(retainedDoctors);
+        for (int request = 0; request < requests; request++) {
+            if (outcome[request] >= 0 && seat[request] != NO_SLOT) {
+                doctorTotals.merge(c.doctorNames[c.slotDoctors[seat[request]]],
+                        DoctorStats.of(outcome[request]), DoctorStats::plus);
+            }
+        }
+        int[] sourceTotals = retainedSources.clone();
+        int pending = TokenStatus.PENDING.ordinal();
+        for (int i = 0; i < rows; i++) {
+            if (c.statuses[i] == pending && c.slots[i] == NO_SLOT && c.previousSlots[i] == NO_SLOT
+                    && outcome[c.requests[i]] >= 0) {
+                sourceTotals[c.sources[i]]++;
+            }
+        }
+        retainedDoctors = Map.copyOf(doctorTotals);
+        retainedSources = sourceTotals;
+
+        requestIndex.clear();
+        slotIndex.clear();
+        doctorIndex.clear();
+        columns = new Columns(INITIAL_CAPACITY);
+        rows = 0;
+        slots = 0;
+        doctors = 0;
+    }
+
+    /**
+     * No-show and cancellation counts and rates per doctor. Each request that held a
+     * seat counts as one booking, for the doctor it ended up with: the one it is
+     * seated with now, or the one whose slot it left when it was cancelled or marked
+     * as a no-show. Moves between slots during rebuilds do not add bookings.
+     */
+    public Map<String, DoctorStats> statsByDoctor() {
+        Snapshot s = published;
+        Columns c = s.columns;
+        int[] seat = new int[s.requests];
+        int[] outcome = new int[s.requests];
+        replay(c, s.rows, seat, outcome);
+
+        int cancelled = TokenStatus.CANCELLED.ordinal();
+        int noShow = TokenStatus.NO_SHOW.ordinal();
+        int[] bookings = new int[s.doctors];
+        int[] cancellations = new int[s.doctors];
+        int[] noShows = new int[s.doctors];
+        for (int request = 0; request < s.requests; request++) {
+            if (seat[request] == NO_SLOT) {
+                continue;
+            }
+            int doctor = c.slotDoctors[seat[request]];
+            bookings[doctor]++;
+            if (outcome[request] == cancelled) {
+                cancellations[doctor]++;
+            } else if (outcome[request] == noShow) {
+                noShows[doctor]++;
+            }
+        }
+
+        Map<String, DoctorStats> result = new TreeMap<>(s.retainedDoctors);
+        for (int d = 0; d < s.doctors; d++) {
+            result.merge(c.doctorNames[d], new DoctorStats(bookings[d], cancellations[d], noShows[d]), DoctorStats::plus);
+        }
+        return result;
+    }
+
+    /**
+     * Replays the rows per request: the slot it holds or left when it finished
+     * ({@link #NO_SLOT} if none), and the status it finished with (-1 while active).
+     */
+    private static void replay(Columns c, int rows, int[] seat, int[] outcome) {
+        int confirmed = TokenStatus.CONFIRMED.ordinal();
+        int pending = TokenStatus.PENDING.ordinal();
+        int cancelled = TokenStatus.CANCELLED.ordinal();
+        int noShow = TokenStatus.NO_SHOW.ordinal();
+        Arrays.fill(seat, NO_SLOT);
+        Arrays.fill(outcome, -1);
+        for (int i = 0; i < rows; i++) {
+            int request = c.requests[i];
+            int status = c.statuses[i];
+            if (status == confirmed) {
+                seat[request] = c.slots[i];
+                outcome[request] = -1;
+            } else if (status == pending && c.previousSlots[i] != NO_SLOT) {
+                seat[request] = NO_SLOT;
+            } else if (status == cancelled || status == noShow) {
+                seat[request] = c.previousSlots[i];
+                outcome[request] = status;
+            }
+        }
+    }
+
+    /**
+     * Number of requests received per source.
+     */
+    public Map<TokenSource, Integer> sourceMix() {
+        Snapshot s = published;
+        Columns c = s.columns;
+        int[] counts = s.retainedSources.clone();
+        int pending = TokenStatus.PENDING.ordinal();
+        for (int i = 0; i < s.rows; i++) {
+            if (c.statuses[i] == pending && c.slots[i] == NO_SLOT && c.previousSlots[i] == NO_SLOT) {
+                counts[c.sources[i]]++;
+            }
+        }
+        Map<TokenSource, Integer> result = new EnumMap<>(TokenSource.class);
+        for (TokenSource source : SOURCES) {
+            result.put(source, counts[source.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Occupied seats per slot over time: one point per bucket in which the slot's
+     * occupancy changed, holding the occupancy at the end of that bucket.
+     */
+    public Map<String, List<FillPoint>> slotFillCurves(Duration bucket) {
+        Snapshot s = published;
+        Columns c = s.columns;
+        long bucketMillis = Math.max(1, bucket.toMillis());
+        int[] fill = new int[s.slots];
+        long[] lastBucket = new long[s.slots];
+        Arrays.fill(lastBucket, Long.MIN_VALUE);
+        List<List<FillPoint>> curves = new ArrayList<>(s.slots);
+        for (int i = 0; i < s.slots; i++) {
+            curves.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < s.rows; i++) {
+            long bucketStart = c.timestamps[i] - Math.floorMod(c.timestamps[i], bucketMillis);
+            int slot = c.slots[i];
+            int previous = c.previousSlots[i];
+            if (slot != NO_SLOT) {
+                fill[slot]++;
+                record(curves.get(slot), lastBucket, slot, bucketStart, fill[slot]);
+            }
+            if (previous != NO_SLOT) {
+                fill[previous]--;
+                record(curves.get(previous), lastBucket, previous, bucketStart, fill[previous]);
+            }
+        }
+
+        Map<String, List<FillPoint>> result = new TreeMap<>();
+        for (int i = 0; i < s.slots; i++) {
+            if (!curves.get(i).isEmpty()) {
+                result.put(c.slotNames[i], curves.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static void record(List<FillPoint> curve, long[] lastBucket, int slot, long bucketStart, int fill) {
+        if (lastBucket[slot] == bucketStart) {
+            curve.set(curve.size() - 1, new FillPoint(Instant.ofEpochMilli(bucketStart), fill));
+        } else {
+            curve.add(new FillPoint(Instant.ofEpochMilli(bucketStart), fill));
+            lastBucket[slot] = bucketStart;
+        }
+    }
+
+    private int slotOf(String slotId, String doctorId) {
+        if (slotId == null) {
+            return NO_SLOT;
+        }
+        Integer existing = slotIndex.get(slotId);
+        if (existing != null) {
+            return existing;
+        }
+        if (slots == columns.slotNames.length || doctors == columns.doctorNames.length) {
+            columns = columns.grow(columns.timestamps.length, columns.slotNames.length * 2, columns.doctorNames.length * 2);
+        }
+        Integer doctor = doctorIndex.get(doctorId);
+        if (doctor == null) {
+            doctor = doctors;
+            doctorIndex.put(doctorId, doctor);
+            columns.doctorNames[doctors++] = doctorId;
+        }
+        int slot = slots;
+        slotIndex.put(slotId, slot);
+        columns.slotNames[slot] = slotId;
+        columns.slotDoctors[slot] = doctor;
+        slots++;
+        return slot;
+    }
+
+    private static int intern(Map<String, Integer> index, String value) {
+        Integer existing = index.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int next = index.size();
+        index.put(value, next);
+        return next;
+    }
+
+    /**
+     * Column arrays. Rows below the published count are never written again, so
+     * readers can scan them without locking; growing copies into a new instance.
+     */
+    private static final class Columns {
+        private final long[] timestamps;
+        private final int[] requests;
+        private final int[] slots;
+        private final int[] previousSlots;
+        private final byte[] sources;
+        private final byte[] statuses;
+        private final String[] slotNames;
+        private final int[] slotDoctors;
+        private final String[] doctorNames;
+
+        private Columns(int capacity) {
+            this(new long[capacity], new int[capacity], new int[capacity], new int[capacity],
+                    new byte[capacity], new byte[capacity], new String[64], new int[64], new String[16]);
+        }
+
+        private Columns(long[] timestamps, int[] requests, int[] slots, int[] previousSlots, byte[] sources,
+                        byte[] statuses, String[] slotNames, int[] slotDoctors, String[] doctorNames) {
+            this.timestamps = timestamps;
+            this.requests = requests;
+            this.slots = slots;
+            this.previousSlots = previousSlots;
+            this.sources = sources;
+            this.statuses = statuses;
+            this.slotNames = slotNames;
+            this.slotDoctors = slotDoctors;
+            this.doctorNames = doctorNames;
+        }
+
+        private Columns grow(int rowCapacity, int slotCapacity, int doctorCapacity) {
+            return new Columns(
+                    Arrays.copyOf(timestamps, rowCapacity),
+                    Arrays.copyOf(requests, rowCapacity),
+                    Arrays.copyOf(slots, rowCapacity),
+                    Arrays.copyOf(previousSlots, rowCapacity),
+                    Arrays.copyOf(sources, rowCapacity),
+                    Arrays.copyOf(statuses, rowCapacity),
+                    Arrays.copyOf(slotNames, slotCapacity),
+                    Arrays.copyOf(slotDoctors, slotCapacity),
+                    Arrays.copyOf(doctorNames, doctorCapacity));
+        }
+    }
+
+    private static final class Snapshot {
+        private final Columns columns;
+        private final int rows;
+        private final int requests;
+        private final int slots;
+        private final int doctors;
+        private final Map<String, DoctorStats> retainedDoctors;
+        private final int[] retainedSources;
+
+        private Snapshot(Columns columns, int rows, int requests, int slots, int doctors,
+                         Map<String, DoctorStats> retainedDoctors, int[] retainedSources) {
+            this.columns = columns;
+            this.rows = rows;
+            this.requests = requests;
+            this.retainedDoctors = retainedDoctors;
+            this.retainedSources = retainedSources;
+            this.slots = slots;
+            this.doctors = doctors;
+        }
+    }
+
+    public static class DoctorStats {
+        private final int bookings;
+        private final int cancellations;
+        private final int noShows;
+
+        public DoctorStats(int bookings, int cancellations, int noShows) {
+            this.bookings = bookings;
+            this.cancellations = cancellations;
+            this.noShows = noShows;
+        }
+
+        /**
+         * One finished booking with the given outcome status.
+         */
+        private static DoctorStats of(int outcome) {
+            return new DoctorStats(1,
+                    outcome == TokenStatus.CANCELLED.ordinal() ? 1 : 0,
+                    outcome == TokenStatus.NO_SHOW.ordinal() ? 1 : 0);
+        }
+
+        private DoctorStats plus(DoctorStats other) {
+            return new DoctorStats(bookings + other.bookings, cancellations + other.cancellations, noShows + other.noShows);
+        }
+
+        public int getBookings() {
+            return bookings;
+        }
+
+        public int getCancellations() {
+            return cancellations;
+        }
+
+        public int getNoShows() {
+            return noShows;
+        }
+
+        public double getCancellationRate() {
+            return bookings == 0 ? 0.0 : (double) cancellations / bookings;
+        }
+
+        public double getNoShowRate() {
+            return bookings == 0 ? 0.0 : (double) noShows / bookings;
+        }
+    }
+
+    public static class FillPoint {
+        private final Instant bucketStart;
+        private final int occupied;
+
+        public FillPoint(Instant bucketStart, int occupied) {
+            this.bucketStart = bucketStart;
+            this.occupied = occupied;
+        }
+
+        public Instant getBucketStart() {
+            return bucketStart;
+        }
+
+        public int getOccupied() {
+            return occupied;
+        }
+    }
+}
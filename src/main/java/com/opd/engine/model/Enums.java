@@ -17,7 +17,8 @@ public final class Enums {
         PENDING,
         CONFIRMED,
         CANCELLED,
-        NO_SHOW
+        NO_SHOW,
+        CHECKED_IN  // patient arrived at the desk; exempt from automatic no-show
     }
 }
 
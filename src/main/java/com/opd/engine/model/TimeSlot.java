@@ -1,18 +1,33 @@
 package com.opd.engine.model;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Comparator;
 
 public class TimeSlot {
 
+    /**
+     * Earliest slot first. Slots without a date belong to "today" and sort before dated ones.
+     */
+    public static final Comparator<TimeSlot> CHRONOLOGICAL = Comparator
+            .comparing(TimeSlot::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TimeSlot::getStart);
+
     private final String id;       // e.g. "drA-09:00"
     private final String doctorId;
+    private final LocalDate date;  // nullable, for single-day rosters
     private final LocalTime start;
     private final LocalTime end;
     private final int capacity;
 
     public TimeSlot(String id, String doctorId, LocalTime start, LocalTime end, int capacity) {
+        this(id, doctorId, null, start, end, capacity);
+    }
+
+    public TimeSlot(String id, String doctorId, LocalDate date, LocalTime start, LocalTime end, int capacity) {
         this.id = id;
         this.doctorId = doctorId;
+        this.date = date;
         this.start = start;
         this.end = end;
         this.capacity = capacity;
@@ -26,6 +41,10 @@ public class TimeSlot {
         return doctorId;
     }
 
+    public LocalDate getDate() {
+        return date;
+    }
+
     public LocalTime getStart() {
         return start;
     }
@@ -37,5 +56,8 @@ public class TimeSlot {
     public int getCapacity() {
         return capacity;
     }
-}
 
+    public TimeSlot withCapacity(int capacity) {
+        return new TimeSlot(id, doctorId, date, start, end, capacity);
+    }
+}
@@ -0,0 +1,145 @@
+package com.opd.engine.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel: {@value #LEVELS} levels of {@value #WHEEL_SIZE} buckets,
+ * each level {@value #WHEEL_SIZE} times coarser than the one below. A timer is
+ * filed in the finest level whose span covers its deadline and moves down a level
+ * each time its bucket comes round, so scheduling is O(1) and each timer is
+ * touched at most {@value #LEVELS} times before it fires, however many are pending.
+ * Ticks are only stepped through one by one while the finest level holds timers.
+ *
+ * With a one-second tick the wheel spans about 194 days; later deadlines are
+ * parked in the coarsest level and re-filed until they come into range.
+ */
+public class HierarchicalTimerWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int WHEEL_SIZE = 1 << BITS;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    private final long tickMillis;
+    private final List<List<ArrayDeque<Timer<T>>>> levels = new ArrayList<>(LEVELS);
+    /** Timers filed in each level, to skip ticks where the finer levels are empty. */
+    private final int[] levelSizes = new int[LEVELS];
+    /** Every timer with a deadline at or before this tick has fired. */
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimerWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            List<ArrayDeque<Timer<T>>> buckets = new ArrayList<>(WHEEL_SIZE);
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                buckets.add(new ArrayDeque<>());
+            }
+            levels.add(buckets);
+        }
+    }
+
+    /**
+     * Schedules an item to fire at the first tick at or after the deadline. Deadlines
+     * already passed fire on the next {@link #advance}.
+     */
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        file(new Timer<>(item, deadlineTick));
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward to the given time.
+     *
+     * @return items whose deadline has passed, in deadline order
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick && size > 0) {
+            int busiest = 0;
+            while (levelSizes[busiest] == 0) {
+                busiest++;
+            }
+            if (busiest > 0) {
+                // Nothing can fire before the next timer cascades out of that level.
+                long boundary = ((currentTick >>> (BITS * busiest)) + 1) << (BITS * busiest);
+                currentTick = Math.min(boundary - 1, targetTick);
+                if (currentTick == targetTick) {
+                    break;
+                }
+            }
+            currentTick++;
+            cascade();
+            ArrayDeque<Timer<T>> bucket = levels.get(0).get((int) (currentTick & MASK));
+            while (!bucket.isEmpty()) {
+                expired.add(bucket.poll().item);
+                levelSizes[0]--;
+                size--;
+            }
+        }
+        // Nothing pending: jump straight to the target instead of stepping through empty ticks.
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * When a level wraps round, the next bucket of the level above is re-filed into
+     * the finer levels. Higher levels only need checking when the one below wrapped.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                return;
+            }
+            ArrayDeque<Timer<T>> bucket = levels.get(level).get((int) ((currentTick >>> (BITS * level)) & MASK));
+            List<Timer<T>> timers = new ArrayList<>(bucket);
+            levelSizes[level] -= timers.size();
+            bucket.clear();
+            for (Timer<T> timer : timers) {
+                file(timer);
+            }
+        }
+    }
+
+    private void file(Timer<T> timer) {
+        long delta = timer.deadlineTick - currentTick;
+        if (delta >= SPAN) {
+            // Park in the coarsest bucket that comes round last; it is re-filed from there.
+            int top = LEVELS - 1;
+            long parkedTick = currentTick + SPAN - 1;
+            levels.get(top).get((int) ((parkedTick >>> (BITS * top)) & MASK)).add(timer);
+            levelSizes[top]++;
+            return;
+        }
+        int level = 0;
+        while (delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        levels.get(level).get((int) ((timer.deadlineTick >>> (BITS * level)) & MASK)).add(timer);
+        levelSizes[level]++;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private static class Timer<T> {
+        private final T item;
+        private final long deadlineTick;
+
+        Timer(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.opd.engine.scheduling;
+
+import com.opd.engine.TokenAllocationEngine;
+import com.opd.engine.model.TimeSlot;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Automatic no-show detection. Each slot gets a deadline, its start plus a grace
+ * period; when it passes, every token in the slot that is still CONFIRMED (not
+ * checked in) is marked NO_SHOW and the engine reallocates once for everything
+ * expiring in the same tick.
+ *
+ * Rebuilds can seat a patient in a slot whose deadline has already passed. Such a
+ * token gets its own deadline, the time it entered the slot plus the grace period,
+ * and is marked only if it is still CONFIRMED in that slot then.
+ *
+ * Deadlines live in a {@link HierarchicalTimerWheel} advanced by one daemon thread,
+ * so pending deadlines cost nothing between ticks. Slots without a date recur daily:
+ * they are scheduled for their next deadline, today's or, once that has passed,
+ * tomorrow's. Dated slots whose deadline has passed are not scheduled at all.
+ */
+public class NoShowScheduler implements AutoCloseable {
+
+    private static final long TICK_MILLIS = 1000;
+
+    private final TokenAllocationEngine engine;
+    private final Duration grace;
+    private final Clock clock;
+    private final HierarchicalTimerWheel<Deadline> wheel;
+    private final ScheduledExecutorService ticker;
+    private final AtomicLong noShows = new AtomicLong();
+    /** Slots whose deadline has passed, with the day it fell on. */
+    private final Map<String, LocalDate> expiredOn = new ConcurrentHashMap<>();
+
+    public NoShowScheduler(TokenAllocationEngine engine, Duration grace) {
+        this(engine, grace, Clock.systemDefaultZone());
+    }
+
+    public NoShowScheduler(TokenAllocationEngine engine, Duration grace, Clock clock) {
+        this.engine = engine;
+        this.grace = grace;
+        this.clock = clock;
+        this.wheel = new HierarchicalTimerWheel<>(TICK_MILLIS, clock.millis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "no-show-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules every current slot and every slot added to the engine later, then
+     * starts ticking.
+     */
+    public void start() {
+        attach();
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Everything {@link #start} does except ticking.
+     */
+    void attach() {
+        engine.setSlotsAddedListener(this::schedule);
+        engine.setSeatsTakenListener(this::seatsTaken);
+        schedule(engine.getSlots());
+    }
+
+    public void schedule(Collection<TimeSlot> slots) {
+        long now = clock.millis();
+        LocalDate today = LocalDate.now(clock);
+        for (TimeSlot slot : slots) {
+            expiredOn.remove(slot.getId());
+            LocalDate date = slot.getDate() != null ? slot.getDate() : today;
+            if (deadline(slot, date) > now) {
+                wheel.schedule(new Deadline(slot, date, null), deadline(slot, date));
+                continue;
+            }
+            expiredOn.put(slot.getId(), date);
+            if (slot.getDate() == null) {
+                wheel.schedule(new Deadline(slot, date.plusDays(1), null), deadline(slot, date.plusDays(1)));
+            }
+        }
+    }
+
+    public Duration getGrace() {
+        return grace;
+    }
+
+    /**
+     * Tokens marked as no-show by this scheduler so far.
+     */
+    public long getNoShows() {
+        return noShows.get();
+    }
+
+    /**
+     * Slot and token deadlines waiting to pass.
+     */
+    public int getPendingDeadlines() {
+        return wheel.size();
+    }
+
+    private long deadline(TimeSlot slot, LocalDate date) {
+        return date.atTime(slot.getStart()).atZone(clock.getZone()).plus(grace).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Gives patients seated in a slot whose deadline has already passed their own
+     * deadline. Runs under the engine lock.
+     */
+    private void seatsTaken(Map<String, TimeSlot> seats) {
+        long now = clock.millis();
+        LocalDate today = LocalDate.now(clock);
+        seats.forEach((requestId, slot) -> {
+            LocalDate date = slot.getDate() != null ? slot.getDate() : today;
+            if (date.equals(expiredOn.get(slot.getId()))) {
+                wheel.schedule(new Deadline(slot, date, requestId), now + grace.toMillis());
+            }
+        });
+    }
+
+    void tick() {
+        // An exception would cancel the periodic task, so a failed sweep is only logged.
+        try {
+            List<String> dueSlots = new ArrayList<>();
+            Map<String, String> dueRequests = new HashMap<>();
+            for (Deadline deadline : wheel.advance(clock.millis())) {
+                TimeSlot scheduled = deadline.slot;
+                if (deadline.requestId != null) {
+                    dueRequests.put(deadline.requestId, scheduled.getId());
+                    continue;
+                }
+                TimeSlot current = engine.getSlot(scheduled.getId());
+                // Skip slots removed since, or re-added with another time (which scheduled them again).
+                if (current != null && Objects.equals(current.getDate(), scheduled.getDate())
+                        && current.getStart().equals(scheduled.getStart())) {
+                    dueSlots.add(scheduled.getId());
+                    // Before the sweep, so patients its rebuild seats here get their own deadline.
+                    expiredOn.put(scheduled.getId(), deadline.date);
+                    if (scheduled.getDate() == null) {
+                        LocalDate next = deadline.date.plusDays(1);
+                        wheel.schedule(new Deadline(scheduled, next, null), deadline(scheduled, next));
+                    }
+                }
+            }
+            if (!dueSlots.isEmpty() || !dueRequests.isEmpty()) {
+                noShows.addAndGet(engine.markNoShows(dueSlots, dueRequests));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Automatic no-show sweep failed: " + e);
+        }
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        engine.setSlotsAddedListener(null);
+        engine.setSeatsTakenListener(null);
+    }
+
+    /**
+     * A slot and the day its deadline falls on, which for undated slots is not part
+     * of the slot itself; with a request id, the deadline of that request's seat in
+     * the slot.
+     */
+    private static class Deadline {
+        private final TimeSlot slot;
+        private final LocalDate date;
+        private final String requestId;
+
+        Deadline(TimeSlot slot, LocalDate date, String requestId) {
+            this.slot = slot;
+            this.date = date;
+            this.requestId = requestId;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.opd.engine;
+
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The partitioned rebuild must place every request exactly where the sequential
+ * rebuild does, including sequence numbers, for both slot selection strategies.
+ */
+class PartitionedRebalancerTest {
+
+    private static final Instant BASE = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void sequentialMatchesOriginalRebalanceLoop() {
+        Random random = new Random(7);
+        for (int run = 0; run < 500; run++) {
+            List<TimeSlot> slots = randomRoster(random);
+            List<TokenRequest> requests = randomRequests(random, slots);
+
+            TokenAllocationEngine engine = new TokenAllocationEngine(slots);
+            engine.addRequests(requests);
+
+            assertEquals(referencePlacement(slots, requests), placement(engine), "run " + run);
+        }
+    }
+
+    @Test
+    void partitionedMatchesSequential() {
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int run = 0; run < 500; run++) {
+                assertSamePlacement(random, pool, run);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSamePlacement(Random random, ForkJoinPool pool, int run) {
+        List<TimeSlot> slots = randomRoster(random);
+        List<TokenRequest> requests = randomRequests(random, slots);
+
+        for (SlotSelectionStrategy strategy : List.of(SlotSelectionStrategy.EARLIEST_FIRST, SlotSelectionStrategy.LOAD_BALANCED)) {
+            Map<String, AllocatedToken> sequential = TokenAllocationEngine.rebuild(slots, requests,
+                    TokenAllocationEngine.RebalanceMode.SEQUENTIAL, strategy, null);
+            Map<String, AllocatedToken> partitioned = TokenAllocationEngine.rebuild(slots, requests,
+                    TokenAllocationEngine.RebalanceMode.PARTITIONED, strategy, pool);
+
+            assertEquals(placement(sequential.values()), placement(partitioned.values()), "run " + run);
+        }
+    }
+
+    private static List<TimeSlot> randomRoster(Random random) {
+        int doctors = 1 + random.nextInt(8);
+        int slotsPerDoctor = 1 + random.nextInt(4);
+        List<TimeSlot> slots = new ArrayList<>();
+        for (int d = 0; d < doctors; d++) {
+            for (int s = 0; s < slotsPerDoctor; s++) {
+                slots.add(new TimeSlot("d" + d + "-" + s, "D" + d,
+                        LocalTime.of(8 + random.nextInt(4), 0), LocalTime.of(13, 0), random.nextInt(5)));
+            }
+        }
+        return slots;
+    }
+
+    private static List<TokenRequest> randomRequests(Random random, List<TimeSlot> slots) {
+        List<TokenRequest> requests = new ArrayList<>();
+        int count = random.nextInt(120);
+        for (int i = 0; i < count; i++) {
+            String preferred = null;
+            if (random.nextInt(3) != 0) {
+                preferred = random.nextInt(10) == 0 ? "missing" : slots.get(random.nextInt(slots.size())).getId();
+            }
+            requests.add(new TokenRequest("r" + i, "P" + i, TokenSource.values()[random.nextInt(TokenSource.values().length)],
+                    preferred, false, BASE.plusSeconds(random.nextInt(30))));
+        }
+        return requests;
+    }
+
+    private static Map<String, String> placement(TokenAllocationEngine engine) {
+        return placement(engine.getCurrentAllocations());
+    }
+
+    private static Map<String, String> placement(Collection<AllocatedToken> tokens) {
+        Map<String, String> placement = new TreeMap<>();
+        for (AllocatedToken token : tokens) {
+            placement.put(token.getRequest().getId(), token.getSlotId() + "#" + token.getSequence());
+        }
+        return placement;
+    }
+
+    /**
+     * The rebalance loop as originally written: preferred slot if it has room, otherwise
+     * the first slot with room in start-time order.
+     */
+    private static Map<String, String> referencePlacement(List<TimeSlot> slots, List<TokenRequest> requests) {
+        List<TokenRequest> sorted = new ArrayList<>(requests);
+        sorted.sort(TokenAllocationEngine.ALLOCATION_ORDER);
+        Map<String, TimeSlot> slotsById = new LinkedHashMap<>();
+        for (TimeSlot slot : slots) {
+            slotsById.put(slot.getId(), slot);
+        }
+        List<TimeSlot> byStart = new ArrayList<>(slots);
+        byStart.sort(Comparator.comparing(TimeSlot::getStart));
+
+        Map<String, Integer> used = new HashMap<>();
+        Map<String, String> placement = new TreeMap<>();
+        for (TokenRequest request : sorted) {
+            TimeSlot preferred = request.getPreferredSlotId() == null ? null : slotsById.get(request.getPreferredSlotId());
+            for (TimeSlot slot : preferred != null ? List.of(preferred) : byStart) {
+                int taken = used.getOrDefault(slot.getId(), 0);
+                if (taken < slot.getCapacity()) {
+                    used.put(slot.getId(), taken + 1);
+                    placement.put(request.getId(), slot.getId() + "#" + (taken + 1));
+                    break;
+                }
+            }
+        }
+        return placement;
+    }
+}
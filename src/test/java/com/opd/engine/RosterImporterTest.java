@@ -0,0 +1,149 @@
+package com.opd.engine;
+
+import com.opd.engine.model.TimeSlot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Valid rosters are imported slot for slot; invalid entries fail with the position
+ * of the entry and the number of slots already committed.
+ */
+class RosterImporterTest {
+
+    private static final String SLOT_A = "{\"id\":\"a\",\"doctorId\":\"D1\",\"start\":\"09:00\",\"end\":\"10:00\",\"capacity\":2}";
+    private static final String SLOT_B = "{\"id\":\"b\",\"doctorId\":\"D1\",\"start\":\"10:00\",\"end\":\"11:00\",\"capacity\":\"3\"}";
+
+    @Test
+    void importsCsvSkippingHeaderCommentsAndBlankLines() throws IOException {
+        TokenAllocationEngine engine = emptyEngine();
+        String csv = "slotId,doctorId,date,start,end,capacity\n"
+                + "# morning\n"
+                + "a,D1,,09:00,10:00,2\n"
+                + "\n"
+                + "b,D2,2026-03-02,10:00,11:00,3\n";
+
+        assertEquals(2, new RosterImporter(engine).importCsv(new StringReader(csv)));
+
+        TimeSlot b = engine.getSlot("b");
+        assertEquals(LocalDate.of(2026, 3, 2), b.getDate());
+        assertEquals(LocalTime.of(10, 0), b.getStart());
+        assertEquals(3, b.getCapacity());
+        assertNull(engine.getSlot("a").getDate());
+    }
+
+    @Test
+    void csvErrorsNameTheLine() {
+        assertCsvError("a,D1,,09:00,10:00\n", "Line 1: expected 6 fields but found 5");
+        assertCsvError("a,D1,,09:00,10:00,-1\n", "Line 1: capacity must not be negative");
+        assertCsvError("a,D1,,10:00,09:00,1\n", "Line 1: end must be after start");
+        assertCsvError("a,D1,,09:00,10:00,two\n", "Line 1: capacity must be a whole number: two");
+        assertCsvError("a,,,09:00,10:00,1\n", "Line 1: doctorId is required");
+    }
+
+    @Test
+    void csvFailureReportsCommittedBatches() {
+        TokenAllocationEngine engine = emptyEngine();
+        String csv = "a,D1,,09:00,10:00,1\n"
+                + "b,D1,,10:00,11:00,1\n"
+                + "c,D1,,11:00,12:00,1\n"
+                + "d,D1,,12:00,11:00,1\n";
+
+        RosterImporter.ImportException e = assertThrows(RosterImporter.ImportException.class,
+                () -> new RosterImporter(engine, 2).importCsv(new StringReader(csv)));
+
+        assertEquals("Line 4: end must be after start", e.getMessage());
+        assertEquals(2, e.getImported());
+        assertEquals(2, engine.getSlots().size());
+    }
+
+    @Test
+    void duplicateSlotRejectsItsBatch() {
+        TokenAllocationEngine engine = emptyEngine();
+        String csv = "a,D1,,09:00,10:00,1\n"
+                + "a,D1,,10:00,11:00,1\n";
+
+        RosterImporter.ImportException e = assertThrows(RosterImporter.ImportException.class,
+                () -> new RosterImporter(engine, 1).importCsv(new StringReader(csv)));
+
+        assertEquals("Slot already exists: a", e.getMessage());
+        assertEquals(1, e.getImported());
+    }
+
+    @Test
+    void importsJsonAcceptingCapacityAsNumberOrString() throws IOException {
+        TokenAllocationEngine engine = emptyEngine();
+        String json = "[" + SLOT_A + "," + SLOT_B.replace("}", ",\"notes\":{\"room\":[1,2]}}") + "]";
+
+        assertEquals(2, new RosterImporter(engine).importJson(stream(json)));
+
+        assertEquals(2, engine.getSlot("a").getCapacity());
+        assertEquals(3, engine.getSlot("b").getCapacity());
+    }
+
+    @Test
+    void jsonErrorsNameTheSlot() {
+        assertJsonError("{\"id\":\"a\"}", "Roster JSON must be an array of slots");
+        assertJsonError("[" + SLOT_A + ", 5]", "Slot 2: expected an object but found VALUE_NUMBER_INT");
+        assertJsonError("[" + SLOT_A.replace("2}", "-2}") + "]", "Slot 1: capacity must not be negative");
+        assertJsonError("[" + SLOT_A.replace("\"end\":\"10:00\"", "\"end\":\"08:00\"") + "]",
+                "Slot 1: end must be after start");
+        assertJsonError("[" + SLOT_A + ",", "Malformed roster JSON: Unexpected end-of-input within/between Array entries");
+    }
+
+    @Test
+    void jsonRejectsNestedValuesForKnownFields() {
+        // The nested "id" must not be taken for the slot's own id.
+        assertJsonError("[{\"id\":{\"id\":\"x\"},\"doctorId\":\"D1\",\"start\":\"09:00\",\"end\":\"10:00\",\"capacity\":1}]",
+                "Slot 1: id must be a string");
+        assertJsonError("[" + SLOT_A.replace("\"start\":\"09:00\"", "\"start\":[\"09:00\"]") + "]",
+                "Slot 1: start must be a string");
+        assertJsonError("[" + SLOT_A.replace("\"capacity\":2", "\"capacity\":{\"max\":2}") + "]",
+                "Slot 1: capacity must be a whole number");
+        assertJsonError("[" + SLOT_A.replace("\"capacity\":2", "\"capacity\":true") + "]",
+                "Slot 1: capacity must be a whole number");
+    }
+
+    @Test
+    void jsonFailureReportsCommittedBatches() {
+        TokenAllocationEngine engine = emptyEngine();
+        String json = "[" + SLOT_A + "," + SLOT_B + ",{\"id\":\"c\"}]";
+
+        RosterImporter.ImportException e = assertThrows(RosterImporter.ImportException.class,
+                () -> new RosterImporter(engine, 2).importJson(stream(json)));
+
+        assertEquals("Slot 3: doctorId is required", e.getMessage());
+        assertEquals(2, e.getImported());
+        assertEquals(2, engine.getSlots().size());
+    }
+
+    private static void assertCsvError(String csv, String message) {
+        RosterImporter.ImportException e = assertThrows(RosterImporter.ImportException.class,
+                () -> new RosterImporter(emptyEngine()).importCsv(new StringReader(csv)));
+        assertEquals(message, e.getMessage());
+        assertEquals(0, e.getImported());
+    }
+
+    private static void assertJsonError(String json, String message) {
+        RosterImporter.ImportException e = assertThrows(RosterImporter.ImportException.class,
+                () -> new RosterImporter(emptyEngine()).importJson(stream(json)));
+        assertEquals(message, e.getMessage());
+        assertEquals(0, e.getImported());
+    }
+
+    private static TokenAllocationEngine emptyEngine() {
+        return new TokenAllocationEngine(List.of());
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package com.opd.engine;
+
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The candidate sees the slot selection of each live rebuild, and a candidate that
+ * falls behind only costs skipped samples.
+ */
+class ShadowVerifierTest {
+
+    private static final Instant BASE = Instant.parse("2026-01-01T08:00:00Z");
+
+    @Test
+    void candidateFollowsStrategyChanges() throws InterruptedException {
+        TokenAllocationEngine engine = new TokenAllocationEngine(List.of(
+                new TimeSlot("a", "D1", LocalTime.of(9, 0), LocalTime.of(10, 0), 3),
+                new TimeSlot("b", "D2", LocalTime.of(9, 0), LocalTime.of(10, 0), 3)));
+        engine.enableShadow("partitioned", Allocator.of(TokenAllocationEngine.RebalanceMode.PARTITIONED));
+        for (int i = 0; i < 4; i++) {
+            engine.addRequest(new TokenRequest("r" + i, "P" + i, TokenSource.WALK_IN, null, false, BASE.plusSeconds(i)));
+        }
+        engine.setSlotSelectionStrategy(SlotSelectionStrategy.LOAD_BALANCED);
+        engine.addRequest(new TokenRequest("r4", "P4", TokenSource.ONLINE, null, false, BASE.plusSeconds(4)));
+
+        ShadowVerifier.Report report = awaitComparisons(engine, 1);
+        assertEquals(0, report.getDivergences(), () -> report.getRecentDivergences().get(0).getExamples().toString());
+        assertEquals(0, report.getFailures());
+        engine.disableShadow();
+    }
+
+    @Test
+    void fullBacklogSkipsSamples() throws InterruptedException {
+        TokenAllocationEngine engine = new TokenAllocationEngine(List.of(
+                new TimeSlot("a", "D1", LocalTime.of(9, 0), LocalTime.of(10, 0), 50)));
+        CountDownLatch release = new CountDownLatch(1);
+        Allocator sequential = Allocator.of(TokenAllocationEngine.RebalanceMode.SEQUENTIAL);
+        engine.enableShadow("blocked", (slots, requests, strategy) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return sequential.allocate(slots, requests, strategy);
+        });
+
+        // One sample runs and waits, 16 queue up, the rest are skipped.
+        for (int i = 0; i < 30; i++) {
+            engine.setSlotSelectionStrategy(i % 2 == 0 ? SlotSelectionStrategy.LOAD_BALANCED : SlotSelectionStrategy.EARLIEST_FIRST);
+        }
+        long skipped = engine.getShadowReport().getSkipped();
+        release.countDown();
+        assertEquals(13, skipped);
+
+        ShadowVerifier.Report report = awaitComparisons(engine, 30 - skipped);
+        assertEquals(30, report.getComparisons() + report.getSkipped());
+        assertEquals(0, report.getDivergences());
+        engine.disableShadow();
+    }
+
+    private static ShadowVerifier.Report awaitComparisons(TokenAllocationEngine engine, long expected) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ShadowVerifier.Report report = engine.getShadowReport();
+            if (report.getComparisons() + report.getFailures() >= expected) {
+                return report;
+            }
+            Thread.sleep(10);
+        }
+        return engine.getShadowReport();
+    }
+}
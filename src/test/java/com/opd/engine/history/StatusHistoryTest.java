@@ -0,0 +1,129 @@
+package com.opd.engine.history;
+
+import com.opd.engine.TokenAllocationEngine;
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.Enums.TokenStatus;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Analytics count each request once and survive rollovers of the log.
+ */
+class StatusHistoryTest {
+
+    private static final Instant BASE = Instant.parse("2026-01-01T08:00:00Z");
+
+    @Test
+    void movesBetweenSlotsAreNotExtraBookings() {
+        StatusHistory history = new StatusHistory();
+        history.append("r1", TokenSource.ONLINE, TokenStatus.PENDING, null, null, null, null);
+        history.append("r1", TokenSource.ONLINE, TokenStatus.CONFIRMED, "a9", "A", null, null);
+        history.append("r1", TokenSource.ONLINE, TokenStatus.CONFIRMED, "b9", "B", "a9", "A");
+        history.append("r1", TokenSource.ONLINE, TokenStatus.CONFIRMED, "a10", "A", "b9", "B");
+        history.append("r2", TokenSource.WALK_IN, TokenStatus.PENDING, null, null, null, null);
+        history.append("r2", TokenSource.WALK_IN, TokenStatus.CONFIRMED, "b9", "B", null, null);
+        history.append("r2", TokenSource.WALK_IN, TokenStatus.NO_SHOW, null, null, "b9", "B");
+        history.append("r3", TokenSource.WALK_IN, TokenStatus.PENDING, null, null, null, null);
+        history.append("r3", TokenSource.WALK_IN, TokenStatus.CANCELLED, null, null, null, null);
+        history.publish();
+
+        Map<String, String> stats = describe(history.statsByDoctor());
+        assertEquals("1 booked, 0 cancelled, 0 no-show", stats.get("A"));
+        assertEquals("1 booked, 0 cancelled, 1 no-show", stats.get("B"));
+        assertEquals(2, history.sourceMix().get(TokenSource.WALK_IN));
+    }
+
+    @Test
+    void clearKeepsFinishedRequests() {
+        StatusHistory history = new StatusHistory();
+        history.append("r1", TokenSource.ONLINE, TokenStatus.PENDING, null, null, null, null);
+        history.append("r1", TokenSource.ONLINE, TokenStatus.CONFIRMED, "a9", "A", null, null);
+        history.append("r1", TokenSource.ONLINE, TokenStatus.CANCELLED, null, null, "a9", "A");
+        history.append("r2", TokenSource.PRIORITY, TokenStatus.PENDING, null, null, null, null);
+        history.append("r2", TokenSource.PRIORITY, TokenStatus.CONFIRMED, "a9", "A", null, null);
+        history.clear();
+        // The owner records the still active r2 again.
+        history.append("r2", TokenSource.PRIORITY, TokenStatus.PENDING, null, null, null, null);
+        history.append("r2", TokenSource.PRIORITY, TokenStatus.CONFIRMED, "a9", "A", null, null);
+        history.append("r2", TokenSource.PRIORITY, TokenStatus.NO_SHOW, null, null, "a9", "A");
+        history.publish();
+
+        assertEquals(3, history.size());
+        assertEquals("2 booked, 1 cancelled, 1 no-show", describe(history.statsByDoctor()).get("A"));
+        assertEquals(1, history.sourceMix().get(TokenSource.ONLINE));
+        assertEquals(1, history.sourceMix().get(TokenSource.PRIORITY));
+    }
+
+    @Test
+    void rolloverMatchesUnboundedHistory() {
+        List<TimeSlot> slots = new ArrayList<>();
+        for (String doctor : List.of("A", "B", "C")) {
+            for (int hour = 9; hour < 12; hour++) {
+                slots.add(new TimeSlot(doctor + hour, doctor, LocalTime.of(hour, 0), LocalTime.of(hour + 1, 0), 2));
+            }
+        }
+        TokenAllocationEngine bounded = new TokenAllocationEngine(slots, 40);
+        TokenAllocationEngine unbounded = new TokenAllocationEngine(slots);
+
+        Random random = new Random(5);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int action = random.nextInt(10);
+            if (action < 6 || ids.isEmpty()) {
+                String preferred = random.nextBoolean() ? null : slots.get(random.nextInt(slots.size())).getId();
+                TokenRequest request = new TokenRequest("r" + i, "P" + i,
+                        TokenSource.values()[random.nextInt(TokenSource.values().length)],
+                        preferred, false, BASE.plusSeconds(i));
+                bounded.addRequest(request);
+                unbounded.addRequest(request);
+                ids.add(request.getId());
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                if (action < 8) {
+                    bounded.cancelRequest(id);
+                    unbounded.cancelRequest(id);
+                } else {
+                    bounded.markNoShow(id);
+                    unbounded.markNoShow(id);
+                }
+            }
+        }
+
+        StatusHistory rolled = bounded.getHistory();
+        StatusHistory full = unbounded.getHistory();
+        assertTrue(rolled.size() < full.size() / 4, "history was rolled over");
+        assertEquals(describe(full.statsByDoctor()), describe(rolled.statsByDoctor()));
+        assertEquals(full.sourceMix(), rolled.sourceMix());
+
+        // Fill curves restart at the rollover but still end at the live occupancy.
+        Map<String, Integer> occupied = new TreeMap<>();
+        for (AllocatedToken token : bounded.getCurrentAllocations()) {
+            occupied.merge(token.getSlotId(), 1, Integer::sum);
+        }
+        Map<String, Integer> lastPoints = new TreeMap<>();
+        rolled.slotFillCurves(Duration.ofHours(1)).forEach((slotId, curve) -> {
+            int last = curve.get(curve.size() - 1).getOccupied();
+            if (last > 0) {
+                lastPoints.put(slotId, last);
+            }
+        });
+        assertEquals(occupied, lastPoints);
+    }
+
+    private static Map<String, String> describe(Map<String, StatusHistory.DoctorStats> stats) {
+        Map<String, String> described = new TreeMap<>();
+        stats.forEach((doctor, s) -> described.put(doctor,
+                s.getBookings() + " booked, " + s.getCancellations() + " cancelled, " + s.getNoShows() + " no-show"));
+        return described;
+    }
+}
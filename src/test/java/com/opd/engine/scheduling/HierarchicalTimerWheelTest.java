@@ -0,0 +1,104 @@
+package com.opd.engine.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every timer fires exactly once, at the first advance that reaches its deadline
+ * tick, in deadline order; checked against a reference model over short steps,
+ * long gaps and deadlines beyond the wheel's span.
+ */
+class HierarchicalTimerWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long SPAN_MILLIS = (1L << 24) * TICK;
+
+    @Test
+    void matchesReferenceModel() {
+        Random random = new Random(3);
+        for (int run = 0; run < 50; run++) {
+            long now = random.nextInt(1_000_000) * 7L;
+            HierarchicalTimerWheel<Integer> wheel = new HierarchicalTimerWheel<>(TICK, now);
+            long currentTick = now / TICK;
+            // deadline tick of each pending item
+            Map<Integer, Long> pending = new HashMap<>();
+            int next = 0;
+            for (int step = 0; step < 400; step++) {
+                int timers = random.nextInt(4);
+                for (int i = 0; i < timers; i++) {
+                    long deadline = now + randomDelay(random);
+                    wheel.schedule(next, deadline);
+                    pending.put(next, Math.max(Math.floorDiv(deadline + TICK - 1, TICK), currentTick + 1));
+                    next++;
+                }
+                now += randomDelay(random);
+                if (now < 0) {
+                    now = 0;
+                }
+                long targetTick = Math.max(currentTick, now / TICK);
+                List<Integer> fired = wheel.advance(now);
+                currentTick = targetTick;
+
+                List<Integer> expected = new ArrayList<>();
+                for (Map.Entry<Integer, Long> entry : pending.entrySet()) {
+                    if (entry.getValue() <= currentTick) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                assertEquals(new TreeSet<>(expected), new TreeSet<>(fired), "run " + run + ", step " + step);
+                assertEquals(expected.size(), fired.size());
+                for (int i = 1; i < fired.size(); i++) {
+                    assertTrue(pending.get(fired.get(i - 1)) <= pending.get(fired.get(i)), "deadline order");
+                }
+                expected.forEach(pending::remove);
+                assertEquals(pending.size(), wheel.size());
+            }
+        }
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        HierarchicalTimerWheel<String> wheel = new HierarchicalTimerWheel<>(TICK, 100_000);
+        wheel.schedule("past", 5_000);
+        wheel.schedule("now", 100_000);
+
+        assertEquals(List.of(), wheel.advance(100_999));
+        assertEquals(List.of("past", "now"), wheel.advance(101_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesBeyondTheSpanFireOnTime() {
+        HierarchicalTimerWheel<String> wheel = new HierarchicalTimerWheel<>(TICK, 0);
+        long far = 3 * SPAN_MILLIS + 12_345_000;
+        wheel.schedule("far", far);
+        wheel.schedule("near", 60_000);
+
+        assertEquals(List.of("near"), wheel.advance(SPAN_MILLIS));
+        assertEquals(List.of(), wheel.advance(2 * SPAN_MILLIS));
+        assertEquals(List.of(), wheel.advance(far - 1));
+        assertEquals(List.of("far"), wheel.advance(far));
+    }
+
+    /**
+     * Mostly ticks to minutes, sometimes days, sometimes past the wheel's span.
+     */
+    private static long randomDelay(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return -random.nextInt(10_000);
+            case 1:
+                return (long) (random.nextDouble() * 2 * SPAN_MILLIS);
+            case 2:
+                return random.nextInt(30) * 86_400_000L + random.nextInt(86_400_000);
+            case 3:
+                return 0;
+            default:
+                return random.nextInt(random.nextBoolean() ? 5_000 : 600_000);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.opd.engine.scheduling;
+
+import com.opd.engine.TokenAllocationEngine;
+import com.opd.engine.model.AllocatedToken;
+import com.opd.engine.model.Enums.TokenSource;
+import com.opd.engine.model.TimeSlot;
+import com.opd.engine.model.TokenRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Slots are swept at their deadline, never for a deadline that passed before they
+ * were scheduled, and patients seated in a slot after its sweep get their own
+ * deadline.
+ */
+class NoShowSchedulerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 2);
+    private static final Duration GRACE = Duration.ofMinutes(15);
+
+    @Test
+    void pastDeadlinesAreNotSweptOnArrival() {
+        MutableClock clock = new MutableClock(TODAY.atTime(10, 0));
+        TokenAllocationEngine engine = new TokenAllocationEngine(List.of(
+                new TimeSlot("early", "D1", LocalTime.of(8, 0), LocalTime.of(9, 0), 1)));
+        engine.addRequests(List.of(walkIn("r0", 0), walkIn("r1", 1), walkIn("r2", 2)));
+        NoShowScheduler scheduler = new NoShowScheduler(engine, GRACE, clock);
+        scheduler.attach();
+
+        // Today's deadline has passed: the undated slot waits for tomorrow's.
+        assertEquals(1, scheduler.getPendingDeadlines());
+
+        // Added after their deadline: the undated slot recurs from tomorrow, the dated one is never swept.
+        engine.addSlots(List.of(
+                new TimeSlot("late", "D1", LocalTime.of(9, 0), LocalTime.of(10, 0), 1),
+                new TimeSlot("yesterday", "D2", TODAY.minusDays(1), LocalTime.of(9, 0), LocalTime.of(10, 0), 1)));
+        assertEquals(Set.of("r1", "r2"), Set.of(engine.getAllocationsForSlot("late").get(0).getRequest().getId(),
+                engine.getAllocationsForSlot("yesterday").get(0).getRequest().getId()));
+        // Two slots for tomorrow plus one deadline for each patient just seated.
+        assertEquals(4, scheduler.getPendingDeadlines());
+
+        clock.set(TODAY.atTime(10, 0, 1));
+        scheduler.tick();
+        assertEquals(0, scheduler.getNoShows());
+
+        // Patients seated at 10:00 are due at 10:15.
+        clock.set(TODAY.atTime(10, 15, 1));
+        scheduler.tick();
+        assertEquals(2, scheduler.getNoShows());
+        assertEquals(Map.of("r0", "early"), seats(engine));
+
+        // Undated slots are swept again at the next day's deadline.
+        clock.set(TODAY.plusDays(1).atTime(8, 15, 1));
+        scheduler.tick();
+        assertEquals(3, scheduler.getNoShows());
+        assertEquals(Map.of(), seats(engine));
+        assertEquals(2, scheduler.getPendingDeadlines());
+    }
+
+    @Test
+    void patientsMovedIntoSweptSlotGetTheirOwnDeadline() {
+        MutableClock clock = new MutableClock(TODAY.atTime(8, 0));
+        TokenAllocationEngine engine = new TokenAllocationEngine(List.of(
+                new TimeSlot("a", "D1", TODAY, LocalTime.of(9, 0), LocalTime.of(10, 0), 2),
+                new TimeSlot("b", "D1", TODAY, LocalTime.of(10, 0), LocalTime.of(11, 0), 2)));
+        engine.addRequests(List.of(walkIn("r0", 0), walkIn("r1", 1), walkIn("r2", 2), walkIn("r3", 3)));
+        NoShowScheduler scheduler = new NoShowScheduler(engine, GRACE, clock);
+        scheduler.attach();
+        engine.checkIn("r0");
+
+        // Sweeping "a" frees r1's seat, and the rebuild moves r2 up from "b".
+        clock.set(TODAY.atTime(9, 15, 1));
+        scheduler.tick();
+        assertEquals(1, scheduler.getNoShows());
+        assertEquals(Map.of("r0", "a", "r2", "a", "r3", "b"), seats(engine));
+
+        clock.set(TODAY.atTime(9, 30, 0));
+        scheduler.tick();
+        assertEquals(1, scheduler.getNoShows());
+
+        // r2 is due 15 minutes after it was moved; r3 then moves up and is checked in.
+        clock.set(TODAY.atTime(9, 30, 2));
+        scheduler.tick();
+        assertEquals(2, scheduler.getNoShows());
+        assertEquals(Map.of("r0", "a", "r3", "a"), seats(engine));
+        assertTrue(engine.checkIn("r3"));
+
+        // b's own deadline finds it empty, and r3's finds it checked in.
+        clock.set(TODAY.atTime(10, 30, 0));
+        scheduler.tick();
+        assertEquals(2, scheduler.getNoShows());
+        assertEquals(Map.of("r0", "a", "r3", "a"), seats(engine));
+        assertEquals(0, scheduler.getPendingDeadlines());
+    }
+
+    @Test
+    void tokenDeadlineOnlyAppliesToTheSlotItWasSetFor() {
+        MutableClock clock = new MutableClock(TODAY.atTime(9, 20));
+        TokenAllocationEngine engine = new TokenAllocationEngine(List.of(
+                new TimeSlot("a", "D1", TODAY, LocalTime.of(9, 0), LocalTime.of(10, 0), 1),
+                new TimeSlot("b", "D1", TODAY, LocalTime.of(11, 0), LocalTime.of(12, 0), 1)));
+        NoShowScheduler scheduler = new NoShowScheduler(engine, GRACE, clock);
+        scheduler.attach();
+
+        engine.addRequest(walkIn("r1", 1));
+        assertEquals(Map.of("r1", "a"), seats(engine));
+
+        // An earlier request takes r1's seat in "a"; r1 moves to "b", which is still open.
+        engine.addRequest(walkIn("r0", 0));
+        assertEquals(Map.of("r0", "a", "r1", "b"), seats(engine));
+
+        // r1's deadline for "a" passes while it sits in "b"; only r0 is marked, and r1 moves back.
+        clock.set(TODAY.atTime(9, 35, 1));
+        scheduler.tick();
+        assertEquals(1, scheduler.getNoShows());
+        assertEquals(Map.of("r1", "a"), seats(engine));
+    }
+
+    private static TokenRequest walkIn(String id, int order) {
+        return new TokenRequest(id, "P" + id, TokenSource.WALK_IN, null, false,
+                Instant.parse("2026-03-01T00:00:00Z").plusSeconds(order));
+    }
+
+    private static Map<String, String> seats(TokenAllocationEngine engine) {
+        Map<String, String> seats = new TreeMap<>();
+        for (AllocatedToken token : engine.getCurrentAllocations()) {
+            seats.put(token.getRequest().getId(), token.getSlotId());
+        }
+        return seats;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(LocalDateTime start) {
+            set(start);
+        }
+
+        void set(LocalDateTime time) {
+            now = time.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}